@@ -0,0 +1,128 @@
+package dev.lukebemish.christen;
+
+import net.neoforged.jst.cli.Main;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Entry point for the christen fatjar. Delegates to JST with christen enabled by default, and with each
+ * {@code --classpath} entry indexed when a classpath index is used and no jars to index are given. With
+ * {@code --christen-schedule}, which JST does not see, the input archive is handed to JST with its most expensive
+ * sources first, by the timings of a previous run, and the output is put back in input order.
+ */
+public final class ChristenMain {
+    private static final String ENABLE_OPTION = "--enable-christen";
+    private static final String CLASSPATH_OPTION = "--classpath";
+    private static final String CLASSPATH_INDEX_OPTION = "--christen-classpath-index";
+    private static final String INDEXED_JAR_OPTION = "--christen-indexed-jar";
+    private static final String SCHEDULE_OPTION = "--christen-schedule";
+
+    private ChristenMain() {}
+
+    public static void main(String[] args) {
+        System.exit(innerMain(args));
+    }
+
+    public static int innerMain(String... args) {
+        var arguments = new ArrayList<>(List.of(withDefaults(args)));
+        var timings = takeOption(arguments, SCHEDULE_OPTION);
+        if (timings == null) {
+            return Main.innerMain(arguments.toArray(String[]::new));
+        }
+        try {
+            return scheduled(Path.of(timings), arguments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int scheduled(Path timingsPath, List<String> arguments) throws IOException {
+        // JST takes the input and output as its last two arguments
+        if (arguments.size() < 2 || !Files.isRegularFile(Path.of(arguments.get(arguments.size() - 2))) || Files.isDirectory(Path.of(arguments.getLast()))) {
+            System.err.println("Not scheduling by cost, as the input and output are not both archives");
+            return Main.innerMain(arguments.toArray(String[]::new));
+        }
+        var input = Path.of(arguments.get(arguments.size() - 2));
+        var output = Path.of(arguments.getLast());
+        var timings = CostSchedule.readTimings(timingsPath);
+        var reordered = Files.createTempFile("christen-input", ".jar");
+        var transformed = Files.createTempFile("christen-output", ".jar");
+        try {
+            CostSchedule.reorder(input, timings, reordered);
+            arguments.set(arguments.size() - 2, reordered.toString());
+            arguments.set(arguments.size() - 1, transformed.toString());
+            int result = Main.innerMain(arguments.toArray(String[]::new));
+            if (result == 0) {
+                CostSchedule.restoreOrder(input, transformed, output);
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(reordered);
+            Files.deleteIfExists(transformed);
+        }
+    }
+
+    /**
+     * Removes an option, given either as {@code --option=value} or as {@code --option value}, from the arguments.
+     * @return the value of the option, or {@code null} if it was not given
+     */
+    private static @Nullable String takeOption(List<String> arguments, String option) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (arguments.get(i).startsWith(option + "=")) {
+                return arguments.remove(i).substring(option.length() + 1);
+            } else if (arguments.get(i).equals(option) && i + 1 < arguments.size()) {
+                arguments.remove(i);
+                return arguments.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private static String[] withDefaults(String... args) {
+        List<String> arguments = new ArrayList<>();
+        var list = Arrays.asList(args);
+        if (list.stream().noneMatch(arg -> isOption(arg, ENABLE_OPTION))) {
+            arguments.add(ENABLE_OPTION);
+        }
+        if (list.stream().anyMatch(arg -> isOption(arg, CLASSPATH_INDEX_OPTION)) && list.stream().noneMatch(arg -> isOption(arg, INDEXED_JAR_OPTION))) {
+            for (var entry : classpath(args)) {
+                arguments.add(INDEXED_JAR_OPTION + "=" + entry);
+            }
+        }
+        arguments.addAll(list);
+        return arguments.toArray(String[]::new);
+    }
+
+    private static List<String> classpath(String... args) {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = null;
+            if (args[i].startsWith(CLASSPATH_OPTION + "=")) {
+                value = args[i].substring(CLASSPATH_OPTION.length() + 1);
+            } else if (args[i].equals(CLASSPATH_OPTION) && i + 1 < args.length) {
+                value = args[i + 1];
+            }
+            if (value != null) {
+                for (var entry : value.split(Pattern.quote(File.pathSeparator))) {
+                    if (!entry.isEmpty()) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static boolean isOption(String arg, String option) {
+        return arg.equals(option) || arg.startsWith(option + "=");
+    }
+}
@@ -0,0 +1,131 @@
+package dev.lukebemish.christen;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.PsiFileFactory;
+import net.neoforged.jst.api.Logger;
+import net.neoforged.jst.api.Replacements;
+import net.neoforged.jst.cli.intellij.IntelliJEnvironmentImpl;
+import net.neoforged.srgutils.IMappingFile;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remaps java sources held in memory, for use of christen as a library. The mappings, the classpath and the PSI
+ * environment resolving against it are set up once and reused by every call, so no sources need to be written to or
+ * read from jars.
+ * <p>
+ * Each source file is remapped on its own, and can only reference classes on the classpath or within itself; unlike
+ * the sources of a jar remapped by JST, files given to the remapper cannot see each other. A remapper may be called
+ * from several threads at once, as JST's own workers share one environment; it must not be closed while a call is
+ * still in progress.
+ */
+public final class ChristenRemapper implements AutoCloseable {
+    private final MappingTable mappings;
+    // Shared between calls, so it must only ever hold classpath classes; see MappedHierarchy#sourceLayer
+    private final MappedHierarchy hierarchy;
+    // JST does not offer a public way to set up its environment outside its CLI, so its implementation is used here
+    private final IntelliJEnvironmentImpl environment;
+
+    /**
+     * A replacement of part of a source file.
+     * @param start the offset in the original source at which the replaced text starts
+     * @param end the offset in the original source at which the replaced text ends; equal to {@code start} for an
+     *            insertion
+     * @param text the text to replace it with
+     */
+    public record Edit(int start, int end, String text) {}
+
+    /**
+     * @param mappings the mappings to remap sources with
+     * @param classpath the jars that the remapped sources are compiled against
+     * @throws IOException if the JDK or a classpath jar cannot be added to the environment
+     */
+    public ChristenRemapper(IMappingFile mappings, List<Path> classpath) throws IOException {
+        this.mappings = MappingTable.of(mappings);
+        this.hierarchy = new MappedHierarchy(this.mappings, null, 0);
+        this.environment = new IntelliJEnvironmentImpl(new Logger(null, System.err));
+        try {
+            this.environment.addCurrentJdkToClassPath();
+            for (var jar : classpath) {
+                this.environment.addJarToClassPath(jar);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                this.environment.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Remaps a single source file.
+     * @param fileName the name of the file, such as {@code com/example/Example.java}
+     * @param source the contents of the file
+     * @return the remapped contents of the file
+     */
+    public String remap(String fileName, CharSequence source) {
+        var replacements = new Replacements();
+        visit(fileName, source, replacements, null);
+        return replacements.apply(source);
+    }
+
+    /**
+     * Finds the edits that remap a single source file, without applying them, for callers that keep their own copy of
+     * the source or only need to know what changes.
+     * @param fileName the name of the file, such as {@code com/example/Example.java}
+     * @param source the contents of the file
+     * @return the edits, which do not overlap, ordered by their offset in {@code source}; edits at the same offset are
+     *         applied in the order given
+     */
+    public List<Edit> edits(String fileName, CharSequence source) {
+        var edits = new ArrayList<Edit>();
+        visit(fileName, source, new Replacements(), edits);
+        edits.sort(Comparator.comparingInt(Edit::start));
+        return List.copyOf(edits);
+    }
+
+    private void visit(String fileName, CharSequence source, Replacements replacements, @Nullable List<Edit> edits) {
+        var simpleName = fileName.substring(fileName.lastIndexOf('/') + 1);
+        var psiFile = PsiFileFactory.getInstance(environment.getProject()).createFileFromText(simpleName, JavaFileType.INSTANCE, source);
+        new ChristenVisitor(mappings, hierarchy.sourceLayer(), replacements, null, null, edits).visitElement(psiFile);
+    }
+
+    /**
+     * Remaps a single source file.
+     * @param fileName the name of the file, such as {@code com/example/Example.java}
+     * @param source the UTF-8 encoded contents of the file
+     * @return the remapped contents of the file
+     */
+    public String remap(String fileName, ByteBuffer source) {
+        return remap(fileName, StandardCharsets.UTF_8.decode(source.duplicate()));
+    }
+
+    /**
+     * Remaps several source files, each on its own as with {@link #remap(String, CharSequence)}.
+     * @param sources the contents of each file, by file name
+     * @return the remapped contents of each file, by file name, in the iteration order of {@code sources}
+     */
+    public Map<String, String> remapAll(Map<String, ? extends CharSequence> sources) {
+        var remapped = new LinkedHashMap<String, String>();
+        for (var entry : sources.entrySet()) {
+            remapped.put(entry.getKey(), remap(entry.getKey(), entry.getValue()));
+        }
+        return remapped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        environment.close();
+    }
+}
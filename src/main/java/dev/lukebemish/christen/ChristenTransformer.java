@@ -5,29 +5,346 @@
 import net.neoforged.jst.api.SourceTransformer;
 import net.neoforged.jst.api.TransformContext;
 import net.neoforged.srgutils.IMappingFile;
+import org.jspecify.annotations.Nullable;
 import picocli.CommandLine;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ChristenTransformer implements SourceTransformer {
+    private static final int PREWARM_SHUTDOWN_SECONDS = 30;
+
     @CommandLine.Option(names = "--christen-mappings", description = "The path to the mappings file to remap sources with", required = true)
     public Path mappingsIn;
 
-    private IMappingFile mappings;
+    @CommandLine.Option(names = "--christen-timings", description = "A path to write the time spent on each file to, slowest first, for diagnosing slow files")
+    public Path timingsOut;
+
+    @CommandLine.Option(names = "--christen-memory-report", description = "A path to write a report of the memory retained by christen's data structures to")
+    public Path memoryReportOut;
+
+    @CommandLine.Option(names = "--christen-usages", description = "A path to write the mapped symbols referenced by each file to, as JSON lines")
+    public Path usagesOut;
+
+    @CommandLine.Option(names = "--christen-profile", description = "A path to read the classes and packages to resolve ahead of time from, and to write those most used by this run to")
+    public Path profilePath;
+
+    @CommandLine.Option(names = "--christen-await-prewarm", description = "Finish resolving the entries of --christen-profile before remapping any file, rather than alongside the first files")
+    public boolean awaitPrewarm;
+
+    @CommandLine.Option(names = "--christen-heap-budget", converter = SizeConverter.class, description = "The heap the loaded mappings and christen's shared caches may take, in bytes or with a k, m or g suffix; 0, the default, leaves it unlimited")
+    public long heapBudget;
+
+    @CommandLine.Option(names = "--christen-classpath-index", description = "A directory to keep an index of each jar given by --christen-indexed-jar in between runs, to read classpath hierarchies from instead of PSI")
+    public Path classpathIndexDirectory;
+
+    @CommandLine.Option(names = "--christen-indexed-jar", description = "A classpath jar to index with --christen-classpath-index; the christen fatjar passes each --classpath entry by default")
+    public List<Path> indexedJars = new ArrayList<>();
+
+    private MappingTable mappings;
+    private ClasspathIndex classpathIndex;
+    private Path spilledMappingsPath;
+    private MappedHierarchy hierarchy;
+    private final Map<String, Long> timings = new ConcurrentHashMap<>();
+    private final Map<String, String> usages = new ConcurrentHashMap<>();
+    private RemapProfile profile;
+    private ExecutorService prewarmExecutor;
+    private final AtomicLong prewarmedBeforeFirstFile = new AtomicLong(-1);
+
+    private long mappingsBytes;
+    private String mappingsMeasure;
+    private final AtomicLong peakVisitorBytes = new AtomicLong();
+    private final AtomicLong peakObservedHeap = new AtomicLong();
 
     @Override
     public void beforeRun(TransformContext context) {
         try {
-            mappings = IMappingFile.load(mappingsIn.toFile());
+            setUp(context);
+        } catch (RuntimeException e) {
+            // A failure here ends the run without reaching afterRun, so nothing set up so far may be left behind
+            stopPrewarming(context);
+            deleteSpilledMappings();
+            throw e;
+        }
+    }
+
+    private void setUp(TransformContext context) {
+        // With explicit collections disabled, the heap cannot be measured around loading and is estimated instead
+        boolean measure = memoryReportOut != null && !explicitGcDisabled();
+        long heapBefore = measure ? collectedHeap() : 0;
+        IMappingFile loaded;
+        try {
+            loaded = IMappingFile.load(mappingsIn.toFile());
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        long estimatedMappingsBytes = MemoryEstimates.mappings(loaded);
+        long cacheBudget = heapBudget;
+        if (heapBudget > 0 && estimatedMappingsBytes > heapBudget / 2) {
+            // Mappings taking more than half the budget would leave too little of it to cache anything in
+            try {
+                spilledMappingsPath = Files.createTempFile("christen-mappings", ".bin");
+                var spilled = SpilledMappings.spill(loaded, spilledMappingsPath);
+                mappings = spilled;
+                mappingsBytes = spilled.bytes();
+                mappingsMeasure = "spilled";
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            mappings = MappingTable.of(loaded);
+            cacheBudget -= estimatedMappingsBytes;
+            if (measure) {
+                // Collecting on both sides leaves only what the loaded mappings retain in the difference
+                mappingsBytes = Math.max(0, collectedHeap() - heapBefore);
+                mappingsMeasure = "measured";
+            } else {
+                mappingsBytes = estimatedMappingsBytes;
+                mappingsMeasure = "estimated";
+            }
+        }
+        if (memoryReportOut != null) {
+            observeHeap();
+        }
+        if (classpathIndexDirectory != null) {
+            try {
+                classpathIndex = ClasspathIndex.open(classpathIndexDirectory, indexedJars, context.logger());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        hierarchy = new MappedHierarchy(mappings, classpathIndex, heapBudget > 0 ? Math.max(1, cacheBudget) : 0);
+        if (profilePath != null) {
+            profile = new RemapProfile();
+            if (Files.exists(profilePath)) {
+                prewarmExecutor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                    var thread = new Thread(runnable, "christen-prewarm");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try {
+                    profile.prewarm(profilePath, context.environment().getProject(), hierarchy, prewarmExecutor, context.logger());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (awaitPrewarm) {
+                    prewarmExecutor.shutdown();
+                    try {
+                        prewarmExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean afterRun(TransformContext context) {
+        // Each output is written even if another could not be, and the run is cleaned up after either way
+        RuntimeException failure = null;
+        try {
+            stopPrewarming(context);
+            if (profile != null) {
+                failure = write(failure, profilePath, () -> profile.write(profilePath));
+            }
+            if (timingsOut != null) {
+                var lines = timings.entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                        .map(entry -> entry.getKey() + "\t" + entry.getValue() / 1000)
+                        .toList();
+                failure = write(failure, timingsOut, () -> Files.write(timingsOut, lines));
+            }
+            if (usagesOut != null) {
+                // Files finish in a different order each run, so lines are written by file instead
+                var lines = usages.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey())
+                        .map(Map.Entry::getValue)
+                        .toList();
+                failure = write(failure, usagesOut, () -> Files.write(usagesOut, lines));
+            }
+            if (memoryReportOut != null) {
+                failure = write(failure, memoryReportOut, () -> Files.write(memoryReportOut, memoryReport()));
+            }
+        } finally {
+            // Nothing retained past the run is needed anymore; drop it in case JST keeps the transformer around
+            mappings = null;
+            classpathIndex = null;
+            hierarchy = null;
+            profile = null;
+            prewarmedBeforeFirstFile.set(-1);
+            timings.clear();
+            usages.clear();
+            deleteSpilledMappings();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return true;
+    }
+
+    private interface Output {
+        void write() throws IOException;
+    }
+
+    private static @Nullable RuntimeException write(@Nullable RuntimeException failure, Path path, Output output) {
+        RuntimeException thrown;
+        try {
+            output.write();
+            return failure;
+        } catch (IOException e) {
+            thrown = new UncheckedIOException("Could not write " + path, e);
+        } catch (RuntimeException e) {
+            thrown = e;
+        }
+        if (failure == null) {
+            return thrown;
+        }
+        failure.addSuppressed(thrown);
+        return failure;
+    }
+
+    private List<String> memoryReport() {
+        observeHeap();
+        // Timings, usages and profile counts only ever grow during a run, so their size now is their peak
+        long timingsBytes = MemoryEstimates.map(timings.size());
+        for (var file : timings.keySet()) {
+            timingsBytes += MemoryEstimates.string(file) + MemoryEstimates.object(0, 8);
+        }
+        long usagesBytes = MemoryEstimates.map(usages.size());
+        for (var entry : usages.entrySet()) {
+            usagesBytes += MemoryEstimates.string(entry.getKey()) + MemoryEstimates.string(entry.getValue());
+        }
+        return List.of(
+                "mappings\t" + mappingsBytes + "\t" + mappingsMeasure,
+                "hierarchy\t" + hierarchy.peakEstimatedBytes() + "\testimated",
+                "visitor\t" + peakVisitorBytes.get() + "\testimated",
+                "timings\t" + timingsBytes + "\testimated",
+                "usages\t" + usagesBytes + "\testimated",
+                "profile\t" + (profile != null ? profile.estimatedBytes() : 0) + "\testimated",
+                "index\t" + (classpathIndex != null ? classpathIndex.bytes() : 0) + "\tmapped",
+                "heap\t" + peakObservedHeap.get() + "\tobserved",
+                "evictions\t" + hierarchy.evictions() + "\tcount",
+                "prewarmed\t" + Math.max(0, prewarmedBeforeFirstFile.get()) + "\tcount"
+        );
+    }
+
+    private void stopPrewarming(TransformContext context) {
+        if (prewarmExecutor != null) {
+            // JST disposes of the environment after this, so no prewarming may still be using PSI by then
+            prewarmExecutor.shutdownNow();
+            try {
+                if (!prewarmExecutor.awaitTermination(PREWARM_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                    context.logger().error("Prewarming did not stop within %s seconds", PREWARM_SHUTDOWN_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            prewarmExecutor = null;
+        }
+    }
+
+    private void deleteSpilledMappings() {
+        if (spilledMappingsPath != null) {
+            try {
+                Files.deleteIfExists(spilledMappingsPath);
+            } catch (IOException e) {
+                // Some platforms refuse to delete a file that is still mapped
+                spilledMappingsPath.toFile().deleteOnExit();
+            }
+            spilledMappingsPath = null;
+        }
     }
 
     @Override
     public void visitFile(PsiFile psiFile, Replacements replacements) {
-        new ChristenVisitor(mappings, replacements).visitElement(psiFile);
+        long start = System.nanoTime();
+        if (profile != null && prewarmedBeforeFirstFile.get() < 0) {
+            prewarmedBeforeFirstFile.compareAndSet(-1, profile.prewarmed());
+        }
+        var fileUsages = usagesOut != null ? new ArrayList<SymbolUsage>() : null;
+        var visitor = new ChristenVisitor(mappings, hierarchy, replacements, fileUsages, profile, null);
+        visitor.visitElement(psiFile);
+        if (fileUsages != null) {
+            fileUsages.sort(Comparator.comparingInt(usage -> usage.range().getStartOffset()));
+            var path = filePath(psiFile);
+            usages.put(path, SymbolUsage.toJsonLine(path, fileUsages));
+        }
+        if (memoryReportOut != null) {
+            peakVisitorBytes.accumulateAndGet(visitor.estimatedBytes(), Math::max);
+            observeHeap();
+        }
+        if (timingsOut != null) {
+            timings.put(filePath(psiFile), System.nanoTime() - start);
+        }
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static boolean explicitGcDisabled() {
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().contains("-XX:+DisableExplicitGC");
+    }
+
+    private static long collectedHeap() {
+        ManagementFactory.getMemoryMXBean().gc();
+        return usedHeap();
+    }
+
+    private void observeHeap() {
+        peakObservedHeap.accumulateAndGet(usedHeap(), Math::max);
+    }
+
+    private static String filePath(PsiFile psiFile) {
+        var virtualFile = psiFile.getVirtualFile();
+        return virtualFile != null ? virtualFile.getPath() : psiFile.getName();
+    }
+
+    /**
+     * Reads a size in bytes, optionally followed by {@code k}, {@code m} or {@code g} for kibibytes, mebibytes or
+     * gibibytes.
+     */
+    public static final class SizeConverter implements CommandLine.ITypeConverter<Long> {
+        @Override
+        public Long convert(String value) {
+            var trimmed = value.trim().toLowerCase(Locale.ROOT);
+            int shift = 0;
+            if (!trimmed.isEmpty()) {
+                shift = switch (trimmed.charAt(trimmed.length() - 1)) {
+                    case 'k' -> 10;
+                    case 'm' -> 20;
+                    case 'g' -> 30;
+                    default -> 0;
+                };
+            }
+            var digits = shift == 0 ? trimmed : trimmed.substring(0, trimmed.length() - 1);
+            long size;
+            try {
+                size = Long.parseLong(digits);
+            } catch (NumberFormatException e) {
+                throw new CommandLine.TypeConversionException("'" + value + "' is not a size in bytes, optionally followed by k, m or g");
+            }
+            if (size < 0) {
+                throw new CommandLine.TypeConversionException("Sizes must not be negative, but was '" + value + "'");
+            }
+            if (size > Long.MAX_VALUE >> shift) {
+                throw new CommandLine.TypeConversionException("'" + value + "' is too large");
+            }
+            return size << shift;
+        }
     }
 }
@@ -1,7 +1,5 @@
 package dev.lukebemish.christen;
 
-import com.google.common.collect.Sets;
-import com.intellij.lang.jvm.JvmModifier;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
@@ -15,17 +13,20 @@
 import net.neoforged.jst.api.PsiHelper;
 import net.neoforged.jst.api.Replacement;
 import net.neoforged.jst.api.Replacements;
-import net.neoforged.srgutils.IMappingFile;
 import org.jetbrains.annotations.NotNull;
 import org.jspecify.annotations.Nullable;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 class ChristenVisitor extends PsiRecursiveElementVisitor {
-    private final IMappingFile mappings;
+    private final MappingTable mappings;
     private final Replacements replacements;
+    private final MappedHierarchy hierarchy;
+    private final @Nullable List<SymbolUsage> usages;
+    private final @Nullable RemapProfile profile;
+    private final @Nullable List<ChristenRemapper.Edit> edits;
 
     private final Map<String, String> remappedImports = new HashMap<>();
     private final Map<MemberReference, StarReferenceImportData> remappedStaticStarImportFields = new HashMap<>();
@@ -34,27 +35,49 @@ class ChristenVisitor extends PsiRecursiveElementVisitor {
 
     private record MemberReference(String owner, String name) {}
     private record StarImportData(boolean[] handled, PsiImportStatementBase statement, String remappedName) {
-        void handle(Replacements replacements) {
+        void handle(ChristenVisitor visitor) {
             if (handled[0]) {
                 return;
             }
             handled[0] = true;
-            replacements.insertAfter(statement, "import "+remappedName+";");
+            visitor.insertAfter(statement, "import "+remappedName+";");
         }
     }
     private record StarReferenceImportData(boolean[] handled, PsiImportStaticStatement statement, String remappedOwner, String remappedName) {
-        void handle(Replacements replacements) {
+        void handle(ChristenVisitor visitor) {
             if (handled[0]) {
                 return;
             }
             handled[0] = true;
-            replacements.insertAfter(statement, "import static "+remappedOwner+"."+remappedName+";");
+            visitor.insertAfter(statement, "import static "+remappedOwner+"."+remappedName+";");
         }
     }
 
-    ChristenVisitor(IMappingFile mappings, Replacements replacements) {
+    /**
+     * @param edits a list to also record each replacement in, in the order they are made, or {@code null}
+     */
+    ChristenVisitor(MappingTable mappings, MappedHierarchy hierarchy, Replacements replacements, @Nullable List<SymbolUsage> usages, @Nullable RemapProfile profile, @Nullable List<ChristenRemapper.Edit> edits) {
         this.mappings = mappings;
+        this.hierarchy = hierarchy;
         this.replacements = replacements;
+        this.usages = usages;
+        this.profile = profile;
+        this.edits = edits;
+    }
+
+    private void replace(TextRange range, String text) {
+        replacements.add(new Replacement(range, text));
+        if (edits != null) {
+            edits.add(new ChristenRemapper.Edit(range.getStartOffset(), range.getEndOffset(), text));
+        }
+    }
+
+    private void insertAfter(PsiElement element, String text) {
+        replacements.insertAfter(element, text);
+        if (edits != null) {
+            int end = element.getTextRange().getEndOffset();
+            edits.add(new ChristenRemapper.Edit(end, end, text));
+        }
     }
 
     @Override
@@ -77,29 +100,34 @@ public void visitElement(@NotNull PsiElement element) {
                 switch (resolved) {
                     case PsiField field -> {
                         var fieldName = reference.getReferenceName();
-                        var remappedName = remapField(field, mappings, field.getContainingClass());
+                        var mapped = remapField(field, field.getContainingClass());
+                        recordFieldUsage(field, mapped, reference.getReferenceNameElement());
+                        var remappedName = mapped != null ? mapped.name() : null;
                         if (remappedName != null && !remappedName.equals(fieldName)) {
-                            replacements.add(new Replacement(reference.getReferenceNameElement().getTextRange(), remappedName));
+                            replace(reference.getReferenceNameElement().getTextRange(), remappedName);
                             var originalReference = new MemberReference(field.getContainingClass().getQualifiedName(), fieldName);
                             var starImport = remappedStaticStarImportFields.get(originalReference);
                             if (starImport != null) {
-                                starImport.handle(replacements);
+                                starImport.handle(this);
                             }
                         }
                     }
                     case PsiMethod method -> {
                         var methodName = reference.getReferenceName();
-                        var remappedName = remapMethod(method, mappings, method.getContainingClass());
+                        var mapped = remapMethod(method, method.getContainingClass());
+                        recordMethodUsage(method, mapped, reference.getReferenceNameElement());
+                        var remappedName = mapped != null ? mapped.name() : null;
                         if (remappedName != null && !remappedName.equals(methodName)) {
-                            replacements.add(new Replacement(reference.getReferenceNameElement().getTextRange(), remappedName));
+                            replace(reference.getReferenceNameElement().getTextRange(), remappedName);
                             var originalReference = new MemberReference(method.getContainingClass().getQualifiedName(), methodName);
                             var starImport = remappedStaticStarImportMethods.get(originalReference);
                             if (starImport != null) {
-                                starImport.handle(replacements);
+                                starImport.handle(this);
                             }
                         }
                     }
                     case PsiClass psiClass -> {
+                        recordClassUsage(psiClass, reference.getReferenceNameElement());
                         remapTypeAtReference(reference, psiClass);
                     }
                     case null -> {}
@@ -120,13 +148,13 @@ private boolean remapTypeAtReference(PsiJavaCodeReferenceElement classReference,
             // qualifier has already been remapped
             var remappedName = formatAsBefore(mappings.remapClass(binaryName(psiClass)), psiClass);
             var lastPiece = remappedName.substring(remappedName.lastIndexOf('.')+1);
-            replacements.add(new Replacement(classReference.getReferenceNameElement().getTextRange(), lastPiece));
+            replace(classReference.getReferenceNameElement().getTextRange(), lastPiece);
             return true;
         }
         if (psiClass != null) {
             var originalClass = psiClass.getQualifiedName();
             if (checkImportForPrefix(classReference, originalClass)) return true;
-            if (mappings.getClass(binaryName(psiClass)) == null) {
+            if (!mappings.hasClass(binaryName(psiClass))) {
                 return false;
             }
             var remappedClass = formatAsBefore(mappings.remapClass(binaryName(psiClass)), psiClass);
@@ -137,7 +165,7 @@ private boolean remapTypeAtReference(PsiJavaCodeReferenceElement classReference,
             } else {
                 start = classReference.getTextRange().getStartOffset();
             }
-            replacements.add(new Replacement(new TextRange(start, end), remappedClass));
+            replace(new TextRange(start, end), remappedClass);
             return true;
         }
         return false;
@@ -147,42 +175,77 @@ private boolean checkImportForPrefix(PsiJavaCodeReferenceElement referenceElemen
         var remappedImport = remappedImports.get(originalClass);
         if (remappedImport != null) {
             var simpleName = remappedImport.substring(remappedImport.lastIndexOf('.')+1);
-            replacements.add(new Replacement(referenceElement.getReferenceNameElement().getTextRange(), simpleName));
+            replace(referenceElement.getReferenceNameElement().getTextRange(), simpleName);
             return true;
         }
         var remappedStarImport = remappedStarImports.get(originalClass);
         if (remappedStarImport != null) {
             var simpleName = remappedStarImport.remappedName().substring(remappedStarImport.remappedName().lastIndexOf('.')+1);
-            replacements.add(new Replacement(referenceElement.getReferenceNameElement().getTextRange(), simpleName));
-            remappedStarImport.handle(replacements);
+            replace(referenceElement.getReferenceNameElement().getTextRange(), simpleName);
+            remappedStarImport.handle(this);
             return true;
         }
         return false;
     }
 
+    private void recordClassUsage(PsiClass psiClass, @Nullable PsiElement nameElement) {
+        if (usages == null || nameElement == null) {
+            return;
+        }
+        var binaryName = binaryName(psiClass);
+        if (mappings.hasClass(binaryName)) {
+            usages.add(new SymbolUsage(SymbolUsage.Kind.CLASS, null, binaryName, null, mappings.remapClass(binaryName), nameElement.getTextRange()));
+        }
+    }
+
+    private void recordFieldUsage(PsiField field, MappedHierarchy.@Nullable MappedMember mapped, @Nullable PsiElement nameElement) {
+        if (usages == null || nameElement == null || mapped == null) {
+            return;
+        }
+        usages.add(new SymbolUsage(SymbolUsage.Kind.FIELD, mapped.owner(), field.getName(), null, mapped.name(), nameElement.getTextRange()));
+    }
+
+    private void recordMethodUsage(PsiMethod method, MappedHierarchy.@Nullable MappedMember mapped, @Nullable PsiElement nameElement) {
+        if (usages == null || nameElement == null || mapped == null) {
+            return;
+        }
+        usages.add(new SymbolUsage(SymbolUsage.Kind.METHOD, mapped.owner(), method.getName(), PsiHelper.getBinaryMethodSignature(method), mapped.name(), nameElement.getTextRange()));
+    }
+
+    private static @Nullable PsiElement importNameElement(PsiImportStatementBase importStatement) {
+        var importReference = importStatement.getImportReference();
+        return importReference != null ? importReference.getReferenceNameElement() : null;
+    }
+
+    private static @Nullable PsiElement importQualifierNameElement(PsiImportStatementBase importStatement) {
+        var importReference = importStatement.getImportReference();
+        if (importReference != null && importReference.getQualifier() instanceof PsiJavaCodeReferenceElement qualifier) {
+            return qualifier.getReferenceNameElement();
+        }
+        return null;
+    }
+
     private void handleImport(PsiImportStatementBase importStatement) {
         var reference = importStatement.resolve();
         switch (reference) {
             case PsiClass psiClass when !(importStatement instanceof PsiImportStaticStatement) -> {
+                recordClassUsage(psiClass, importNameElement(importStatement));
                 var importPath = psiClass.getQualifiedName();
                 if (importPath != null) {
                     var remapped = formatAsBefore(mappings.remapClass(binaryName(psiClass)), psiClass);
                     if (!remapped.equals(importPath)) {
-                        replacements.add(new Replacement(importStatement.getTextRange(), "import "+remapped+";"));
+                        replace(importStatement.getTextRange(), "import "+remapped+";");
                         remappedImports.put(importPath, remapped);
                     }
                 }
             }
             case PsiPackage psiPackage -> {
-                for (var psiClass : psiPackage.getClasses()) {
-                    var importPath = psiClass.getQualifiedName();
-                    if (importPath != null) {
-                        var remapped = formatAsBefore(mappings.remapClass(binaryName(psiClass)), psiClass);
-                        if (!remapped.equals(importPath)) {
-                            remappedStarImports.put(importPath, new StarImportData(new boolean[1], importStatement, remapped));
-                        }
-                    }
+                if (profile != null) {
+                    profile.recordPackage(psiPackage.getQualifiedName());
                 }
+                hierarchy.packageStarImport(psiPackage).forEach((importPath, remapped) ->
+                        remappedStarImports.put(importPath, new StarImportData(new boolean[1], importStatement, remapped))
+                );
             }
             case PsiField psiField -> {
                 var containingClass = psiField.getContainingClass();
@@ -190,10 +253,13 @@ private void handleImport(PsiImportStatementBase importStatement) {
                     var originalClass = containingClass.getQualifiedName();
                     if (originalClass != null) {
                         var remappedClass = formatAsBefore(mappings.remapClass(binaryName(containingClass)), containingClass);
-                        var newFieldName = remapField(psiField, mappings, containingClass);
+                        var newField = remapField(psiField, containingClass);
+                        var newFieldName = newField != null ? newField.name() : null;
+                        recordFieldUsage(psiField, newField, importNameElement(importStatement));
+                        recordClassUsage(containingClass, importQualifierNameElement(importStatement));
                         if (newFieldName != null || !remappedClass.equals(originalClass)) {
                             var newMemberReference = new MemberReference(remappedClass, newFieldName != null ? newFieldName : psiField.getName());
-                            replacements.add(new Replacement(importStatement.getTextRange(), "import static "+newMemberReference.owner+"."+newMemberReference.name+";"));
+                            replace(importStatement.getTextRange(), "import static "+newMemberReference.owner+"."+newMemberReference.name+";");
                         }
                     }
                 }
@@ -204,53 +270,41 @@ private void handleImport(PsiImportStatementBase importStatement) {
                     var originalClass = containingClass.getQualifiedName();
                     if (originalClass != null) {
                         var remappedClass = formatAsBefore(mappings.remapClass(binaryName(containingClass)), containingClass);
-                        var newMethodName = remapMethod(psiMethod, mappings, containingClass);
+                        var newMethod = remapMethod(psiMethod, containingClass);
+                        var newMethodName = newMethod != null ? newMethod.name() : null;
+                        recordMethodUsage(psiMethod, newMethod, importNameElement(importStatement));
+                        recordClassUsage(containingClass, importQualifierNameElement(importStatement));
                         if (newMethodName != null || !remappedClass.equals(originalClass)) {
                             var newMemberReference = new MemberReference(remappedClass, newMethodName != null ? newMethodName : psiMethod.getName());
-                            replacements.add(new Replacement(importStatement.getTextRange(), "import static "+newMemberReference.owner+"."+newMemberReference.name+";"));
+                            replace(importStatement.getTextRange(), "import static "+newMemberReference.owner+"."+newMemberReference.name+";");
                         }
                     }
                 }
             }
             case null -> {}
             default -> {
+                if (reference instanceof PsiClass psiClass && !importStatement.isOnDemand()) {
+                    // a static import of a nested class
+                    recordClassUsage(psiClass, importNameElement(importStatement));
+                }
                 if (importStatement instanceof PsiImportStaticStatement psiImportStaticStatement && importStatement.isOnDemand()) {
                     var targetClass = psiImportStaticStatement.resolveTargetClass();
                     if (targetClass != null) {
-                        var originalClass = targetClass.getQualifiedName();
-                        if (originalClass != null) {
-                            var remappedClass = formatAsBefore(mappings.remapClass(binaryName(targetClass)), targetClass);
-                            for (var method : targetClass.getAllMethods()) {
-                                if (!method.hasModifier(JvmModifier.STATIC)) {
-                                    continue;
-                                }
-                                var newMethodName = remapMethod(method, mappings, targetClass);
-                                if (newMethodName != null || !remappedClass.equals(originalClass)) {
-                                    var oldMemberReference = new MemberReference(originalClass, method.getName());
-                                    var newMemberReference = new StarReferenceImportData(new boolean[1], psiImportStaticStatement, remappedClass, newMethodName != null ? newMethodName : method.getName());
-                                    remappedStaticStarImportMethods.put(oldMemberReference, newMemberReference);
-                                }
-                            }
-                            for (var field : targetClass.getAllFields()) {
-                                if (!field.hasModifier(JvmModifier.STATIC)) {
-                                    continue;
-                                }
-                                var newMethodName = remapField(field, mappings, targetClass);
-                                if (newMethodName != null || !remappedClass.equals(originalClass)) {
-                                    var oldMemberReference = new MemberReference(originalClass, field.getName());
-                                    var newMemberReference = new StarReferenceImportData(new boolean[1], psiImportStaticStatement, remappedClass, newMethodName != null ? newMethodName : field.getName());
-                                    remappedStaticStarImportFields.put(oldMemberReference, newMemberReference);
-                                }
-                            }
-                            for (var inner : targetClass.getAllInnerClasses()) {
-                                var qualifiedName = inner.getQualifiedName();
-                                if (qualifiedName != null) {
-                                    var remappedInnerClass = formatAsBefore(mappings.remapClass(binaryName(inner)), inner);
-                                    if (!remappedInnerClass.equals(qualifiedName)) {
-                                        remappedStarImports.put(qualifiedName, new StarImportData(new boolean[1], psiImportStaticStatement, remappedInnerClass));
-                                    }
-                                }
-                            }
+                        recordClassUsage(targetClass, importNameElement(importStatement));
+                        if (profile != null && targetClass.getQualifiedName() instanceof String qualifiedName) {
+                            profile.recordStaticImport(qualifiedName);
+                        }
+                        var starImport = hierarchy.staticStarImport(targetClass);
+                        if (starImport != null) {
+                            starImport.methods().forEach((name, remappedName) ->
+                                    remappedStaticStarImportMethods.put(new MemberReference(starImport.originalClass(), name), new StarReferenceImportData(new boolean[1], psiImportStaticStatement, starImport.remappedClass(), remappedName))
+                            );
+                            starImport.fields().forEach((name, remappedName) ->
+                                    remappedStaticStarImportFields.put(new MemberReference(starImport.originalClass(), name), new StarReferenceImportData(new boolean[1], psiImportStaticStatement, starImport.remappedClass(), remappedName))
+                            );
+                            starImport.innerClasses().forEach((qualifiedName, remappedInnerClass) ->
+                                    remappedStarImports.put(qualifiedName, new StarImportData(new boolean[1], psiImportStaticStatement, remappedInnerClass))
+                            );
                         }
                     }
                 }
@@ -258,72 +312,55 @@ private void handleImport(PsiImportStatementBase importStatement) {
         }
     }
 
-    private String formatAsBefore(String name, PsiClass original) {
-        if (original.getContainingClass() != null) {
+    /**
+     * {@return the estimated size, in bytes, of this visitor's per-file tables}
+     */
+    long estimatedBytes() {
+        long size = MemoryEstimates.stringMap(remappedImports);
+        size += MemoryEstimates.map(remappedStaticStarImportFields.size()) + MemoryEstimates.map(remappedStaticStarImportMethods.size());
+        for (var staticStarImports : List.of(remappedStaticStarImportFields, remappedStaticStarImportMethods)) {
+            for (var entry : staticStarImports.entrySet()) {
+                size += MemoryEstimates.object(2, 0) + MemoryEstimates.string(entry.getKey().name());
+                size += MemoryEstimates.object(4, 0) + MemoryEstimates.array(1) + MemoryEstimates.string(entry.getValue().remappedName());
+            }
+        }
+        size += MemoryEstimates.map(remappedStarImports.size());
+        for (var entry : remappedStarImports.entrySet()) {
+            size += MemoryEstimates.string(entry.getKey());
+            size += MemoryEstimates.object(3, 0) + MemoryEstimates.array(1) + MemoryEstimates.string(entry.getValue().remappedName());
+        }
+        return size;
+    }
+
+    static String formatAsBefore(String name, PsiClass original) {
+        return formatAsBefore(name, original.getContainingClass() != null);
+    }
+
+    static String formatAsBefore(String name, boolean nested) {
+        if (nested) {
             var index = name.lastIndexOf('$');
             name = name.substring(0, index) + "." + name.substring(index + 1);
         }
         return name.replace('/', '.');
     }
 
-    private final Set<String> notMappedClasses = Sets.newConcurrentHashSet();
+    private MappedHierarchy.@Nullable MappedMember remapField(PsiField psiField, PsiClass originalClass) {
+        recordOwner(originalClass);
+        return hierarchy.remapField(psiField.getName(), originalClass);
+    }
 
-    private @Nullable String remapField(PsiField psiField, IMappingFile mappings, PsiClass originalClass) {
-        if (notMappedClasses.contains(binaryName(originalClass))) {
-            return null;
-        }
-        var clazz = mappings.getClass(binaryName(originalClass));
-        if (clazz == null) {
-            for (var type : originalClass.getSupers()) {
-                var typeQualifiedName = type.getQualifiedName();
-                if (typeQualifiedName != null) {
-                    if (typeQualifiedName.equals("java.lang.Object")) {
-                        continue;
-                    }
-                    var searched = remapField(psiField, mappings, type);
-                    if (searched != null) {
-                        return searched;
-                    }
-                }
-            }
-            notMappedClasses.add(binaryName(originalClass));
-            return null;
-        }
-        if (clazz.getField(psiField.getName()) == null) {
-            return null;
-        }
-        return clazz.remapField(psiField.getName());
+    private MappedHierarchy.@Nullable MappedMember remapMethod(PsiMethod psiMethod, PsiClass originalClass) {
+        recordOwner(originalClass);
+        return hierarchy.remapMethod(psiMethod.getName(), PsiHelper.getBinaryMethodSignature(psiMethod), originalClass);
     }
 
-    private @Nullable String remapMethod(PsiMethod psiMethod, IMappingFile mappings, PsiClass originalClass) {
-        if (notMappedClasses.contains(binaryName(originalClass))) {
-            return null;
-        }
-        var clazz = mappings.getClass(binaryName(originalClass));
-        if (clazz == null) {
-            for (var type : originalClass.getSupers()) {
-                var typeQualifiedName = type.getQualifiedName();
-                if (typeQualifiedName != null) {
-                    if (typeQualifiedName.equals("java.lang.Object")) {
-                        continue;
-                    }
-                    var searched = remapMethod(psiMethod, mappings, type);
-                    if (searched != null) {
-                        return searched;
-                    }
-                }
-            }
-            notMappedClasses.add(binaryName(originalClass));
-            return null;
-        }
-        var desc = PsiHelper.getBinaryMethodSignature(psiMethod);
-        if (clazz.getMethod(psiMethod.getName(), desc) == null) {
-            return null;
+    private void recordOwner(PsiClass owner) {
+        if (profile != null && owner.getQualifiedName() instanceof String qualifiedName) {
+            profile.recordClass(qualifiedName);
         }
-        return clazz.remapMethod(psiMethod.getName(), desc);
     }
 
-    private static String binaryName(PsiClass psiClass) {
+    static String binaryName(PsiClass psiClass) {
         StringBuilder builder = new StringBuilder();
         PsiHelper.getBinaryClassName(psiClass, builder);
         return builder.toString();
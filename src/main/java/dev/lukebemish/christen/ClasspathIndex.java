@@ -0,0 +1,253 @@
+package dev.lukebemish.christen;
+
+import net.neoforged.jst.api.Logger;
+import org.jspecify.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the classes in classpath jars, read from their bytecode with ASM and kept between runs in a directory
+ * of {@link RecordFile record files}, one per jar, named by the SHA-256 hash of the jar's contents so that a jar is
+ * only read again once it changes. Each class is a record of what {@link MappedHierarchy} otherwise finds through
+ * PSI: its supertypes, the static fields and methods it declares, and its member classes.
+ */
+final class ClasspathIndex {
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".christen-index";
+
+    /**
+     * An indexed class. Names are binary names.
+     * @param outerClass the class this is a member of, or {@code null} if it is a top level class
+     * @param simpleName the simple name of this class, if it is a member class
+     * @param supertypes the superclass, if any, followed by the interfaces of this class
+     * @param staticFields the names of the static fields this class declares
+     * @param staticMethods the names and descriptors of the static methods this class declares
+     * @param memberClasses the member classes this class declares
+     */
+    record IndexedClass(@Nullable String outerClass, @Nullable String simpleName, List<String> supertypes, List<String> staticFields, List<Method> staticMethods, List<String> memberClasses) {}
+
+    record Method(String name, String descriptor) {}
+
+    private final List<RecordFile> files;
+
+    private ClasspathIndex(List<RecordFile> files) {
+        this.files = files;
+    }
+
+    /**
+     * Opens the index of each of the given jars from the given directory, indexing any jar whose contents have not
+     * been indexed there before. Classes are looked up in the jars in the order given, as on a classpath.
+     */
+    static ClasspathIndex open(Path directory, List<Path> jars, Logger logger) throws IOException {
+        var files = new ArrayList<RecordFile>();
+        for (var jar : jars) {
+            if (!Files.isRegularFile(jar)) {
+                logger.debug("Not indexing %s, as it is not a jar", jar);
+                continue;
+            }
+            var path = directory.resolve(hash(jar) + SUFFIX);
+            if (Files.exists(path)) {
+                try {
+                    files.add(RecordFile.open(path, VERSION));
+                    continue;
+                } catch (IOException e) {
+                    logger.debug("Indexing %s again, as its index could not be read: %s", jar, e);
+                }
+            }
+            index(jar).write(path, VERSION);
+            files.add(RecordFile.open(path, VERSION));
+        }
+        return new ClasspathIndex(List.copyOf(files));
+    }
+
+    private static String hash(Path jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JVM must support SHA-256", e);
+        }
+        try (var input = new DigestInputStream(Files.newInputStream(jar), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static RecordFile.Writer index(Path jar) throws IOException {
+        var writer = new RecordFile.Writer();
+        try (var zip = new ZipFile(jar.toFile())) {
+            var entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                var entry = entries.nextElement();
+                // Versioned entries under META-INF are left to PSI, which knows which release applies
+                if (entry.isDirectory() || !entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/") || entry.getName().endsWith("module-info.class")) {
+                    continue;
+                }
+                try (InputStream input = zip.getInputStream(entry)) {
+                    var visitor = new IndexingVisitor();
+                    new ClassReader(input).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    visitor.write(writer);
+                }
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * {@return the indexed class with the given binary name, or {@code null} if no indexed jar contains it}
+     */
+    @Nullable IndexedClass find(String name) {
+        for (var file : files) {
+            var cursor = file.find(name);
+            if (cursor != null) {
+                var outerClass = cursor.readString();
+                var simpleName = cursor.readString();
+                var supertypes = readStrings(cursor);
+                var staticFields = readStrings(cursor);
+                int methodCount = cursor.readInt();
+                var staticMethods = new ArrayList<Method>(methodCount);
+                for (int i = 0; i < methodCount; i++) {
+                    staticMethods.add(new Method(cursor.readString(), cursor.readString()));
+                }
+                var memberClasses = readStrings(cursor);
+                return new IndexedClass(outerClass.isEmpty() ? null : outerClass, simpleName.isEmpty() ? null : simpleName, supertypes, staticFields, List.copyOf(staticMethods), memberClasses);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@return the qualified name of the indexed class with the given binary name, or {@code null} if it is not
+     * indexed}
+     */
+    @Nullable String qualifiedName(String name) {
+        var indexed = find(name);
+        if (indexed == null) {
+            return null;
+        }
+        if (indexed.outerClass() == null) {
+            return name.replace('/', '.');
+        }
+        var outer = qualifiedName(indexed.outerClass());
+        return outer != null ? outer + "." + indexed.simpleName() : null;
+    }
+
+    /**
+     * {@return the total size, in bytes, of the mapped index files}
+     */
+    long bytes() {
+        long size = 0;
+        for (var file : files) {
+            size += file.bytes();
+        }
+        return size;
+    }
+
+    private static List<String> readStrings(RecordFile.Cursor cursor) {
+        int count = cursor.readInt();
+        var strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(cursor.readString());
+        }
+        return List.copyOf(strings);
+    }
+
+    private static final class IndexingVisitor extends ClassVisitor {
+        private String name;
+        private String outerClass = "";
+        private String simpleName = "";
+        private boolean local;
+        private final List<String> supertypes = new ArrayList<>();
+        private final List<String> staticFields = new ArrayList<>();
+        private final List<Method> staticMethods = new ArrayList<>();
+        private final List<String> memberClasses = new ArrayList<>();
+
+        private IndexingVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            if (superName != null) {
+                supertypes.add(superName);
+            }
+            if (interfaces != null) {
+                supertypes.addAll(List.of(interfaces));
+            }
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            if (name.equals(this.name)) {
+                if (outerName == null || innerName == null) {
+                    // local and anonymous classes cannot be referenced by name from other files
+                    local = true;
+                } else {
+                    outerClass = outerName;
+                    simpleName = innerName;
+                }
+            } else if (this.name.equals(outerName) && innerName != null) {
+                memberClasses.add(name);
+            }
+        }
+
+        @Override
+        public @Nullable FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if (isStatic(access)) {
+                staticFields.add(name);
+            }
+            return null;
+        }
+
+        @Override
+        public @Nullable MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (isStatic(access) && !name.startsWith("<")) {
+                staticMethods.add(new Method(name, descriptor));
+            }
+            return null;
+        }
+
+        private static boolean isStatic(int access) {
+            // Synthetic members, such as lambda bodies, are not visible to sources and so not to PSI either
+            return (access & Opcodes.ACC_STATIC) != 0 && (access & Opcodes.ACC_SYNTHETIC) == 0;
+        }
+
+        void write(RecordFile.Writer writer) {
+            if (name == null || local) {
+                return;
+            }
+            var record = writer.add(name).writeString(outerClass).writeString(simpleName);
+            writeStrings(record, supertypes);
+            writeStrings(record, staticFields);
+            record.writeInt(staticMethods.size());
+            for (var method : staticMethods) {
+                record.writeString(method.name()).writeString(method.descriptor());
+            }
+            writeStrings(record, memberClasses);
+        }
+
+        private static void writeStrings(RecordFile.Record record, List<String> strings) {
+            record.writeInt(strings.size());
+            for (var string : strings) {
+                record.writeString(string);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package dev.lukebemish.christen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reorders an input archive so that the most expensive sources are dispatched first, and restores the input order in
+ * the output afterwards. JST hands entries to its workers in archive order, with each worker taking the next entry as
+ * soon as it is free, so putting the longest files first keeps a slow file from starting last and leaving the other
+ * workers idle at the end of the run.
+ * <p>
+ * Costs come from the timings a previous run wrote with {@code --christen-timings}. Sources without a timing, such as
+ * those new since that run, are costed by their size at the rate the timed sources took, or by size alone when
+ * nothing was timed.
+ */
+final class CostSchedule {
+    private CostSchedule() {}
+
+    /**
+     * {@return the time in microseconds each file took in a previous run, by every trailing part of its path} Files
+     * are keyed by the path JST gave them, which may be prefixed by the archive they came from, so an entry is found
+     * by its own name whatever that prefix was. A timings file that does not exist yet has no timings.
+     */
+    static Map<String, Long> readTimings(Path path) throws IOException {
+        var timings = new HashMap<String, Long>();
+        if (!Files.exists(path)) {
+            return timings;
+        }
+        for (var line : Files.readAllLines(path)) {
+            int tab = line.lastIndexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            long micros;
+            try {
+                micros = Long.parseLong(line.substring(tab + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            var file = line.substring(0, tab);
+            for (int start = 0; start >= 0; start = nextPart(file, start)) {
+                // Lines are slowest first, so where two files share a trailing part the slower one is kept
+                timings.putIfAbsent(file.substring(start), micros);
+            }
+        }
+        return timings;
+    }
+
+    private static int nextPart(String path, int start) {
+        int separator = path.indexOf('/', start);
+        return separator < 0 ? -1 : separator + 1;
+    }
+
+    /**
+     * {@return the names of the given entries in the order they should be dispatched in} Entries under
+     * {@code META-INF} come first, so that a manifest stays at the start of the archive, followed by sources from
+     * most to least expensive and then every other entry, in input order.
+     */
+    static List<String> dispatchOrder(List<? extends ZipEntry> entries, Map<String, Long> timings) {
+        long timedMicros = 0;
+        long timedBytes = 0;
+        for (var entry : entries) {
+            var micros = timings.get(entry.getName());
+            if (isSource(entry) && micros != null && entry.getSize() > 0) {
+                timedMicros += micros;
+                timedBytes += entry.getSize();
+            }
+        }
+        double microsPerByte = timedBytes > 0 ? (double) timedMicros / timedBytes : 1;
+        var metadata = new ArrayList<String>();
+        var sources = new ArrayList<ZipEntry>();
+        var others = new ArrayList<String>();
+        var costs = new HashMap<String, Double>();
+        for (var entry : entries) {
+            if (entry.getName().startsWith("META-INF/")) {
+                metadata.add(entry.getName());
+            } else if (isSource(entry)) {
+                var micros = timings.get(entry.getName());
+                costs.put(entry.getName(), micros != null ? micros : Math.max(0, entry.getSize()) * microsPerByte);
+                sources.add(entry);
+            } else {
+                others.add(entry.getName());
+            }
+        }
+        sources.sort(Comparator.comparingDouble((ZipEntry entry) -> costs.get(entry.getName())).reversed());
+        var order = new ArrayList<>(metadata);
+        sources.forEach(entry -> order.add(entry.getName()));
+        order.addAll(others);
+        return order;
+    }
+
+    private static boolean isSource(ZipEntry entry) {
+        return !entry.isDirectory() && entry.getName().endsWith(".java");
+    }
+
+    /**
+     * Copies an archive with its entries in dispatch order.
+     */
+    static void reorder(Path input, Map<String, Long> timings, Path reordered) throws IOException {
+        try (var zip = new ZipFile(input.toFile())) {
+            copy(zip, dispatchOrder(Collections.list(zip.entries()), timings), reordered);
+        }
+    }
+
+    /**
+     * Copies a transformed archive with its entries in the order of the original archive, followed by any entries the
+     * original did not have.
+     */
+    static void restoreOrder(Path original, Path transformed, Path output) throws IOException {
+        try (var originalZip = new ZipFile(original.toFile()); var transformedZip = new ZipFile(transformed.toFile())) {
+            var order = new ArrayList<String>();
+            var seen = new HashSet<String>();
+            for (var entry : Collections.list(originalZip.entries())) {
+                if (transformedZip.getEntry(entry.getName()) != null && seen.add(entry.getName())) {
+                    order.add(entry.getName());
+                }
+            }
+            for (var entry : Collections.list(transformedZip.entries())) {
+                if (seen.add(entry.getName())) {
+                    order.add(entry.getName());
+                }
+            }
+            copy(transformedZip, order, output);
+        }
+    }
+
+    private static void copy(ZipFile zip, List<String> order, Path output) throws IOException {
+        try (var out = new ZipOutputStream(Files.newOutputStream(output))) {
+            for (var name : order) {
+                var entry = zip.getEntry(name);
+                var copy = new ZipEntry(entry);
+                // Recompressing may not give the same compressed size
+                copy.setCompressedSize(-1);
+                out.putNextEntry(copy);
+                try (var in = zip.getInputStream(entry)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package dev.lukebemish.christen;
+
+import com.intellij.lang.jvm.JvmModifier;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import net.neoforged.jst.api.PsiHelper;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * An in-memory cache, kept for the duration of a run and shared by every file in it, of what christen derives from
+ * the class hierarchy and package contents: which mapped classes member lookups on a class are searched in, and what
+ * a static or package star import of a class or package expands to. Classpath types are the same for every file, so
+ * each is walked once per run rather than once per file.
+ * <p>
+ * With a {@link ClasspathIndex}, the hierarchies and static star imports of classpath classes are read from the index
+ * where it has them, and from PSI only where it does not, such as for JDK classes. Package star imports always go
+ * through PSI, as packages may hold source classes as well as classpath ones.
+ * <p>
+ * When the same cache outlives the sources it was used with, a {@link #sourceLayer() source layer} keeps what is
+ * derived from source-defined classes to itself, and leaves only classpath classes in the shared cache.
+ */
+final class MappedHierarchy {
+    /**
+     * The remapped names a static star import of a class brings into scope, for the members and nested classes whose
+     * names or owner change.
+     * @param originalClass the qualified name of the imported class
+     * @param remappedClass the remapped qualified name of the imported class
+     * @param methods remapped names of static methods, by original name
+     * @param fields remapped names of static fields, by original name
+     * @param innerClasses remapped qualified names of nested classes, by original qualified name
+     */
+    record StaticStarImport(String originalClass, String remappedClass, Map<String, String> methods, Map<String, String> fields, Map<String, String> innerClasses) {}
+
+    /**
+     * A member mapping found through the class hierarchy.
+     * @param owner the mapped class the mapping was found in, which may be a supertype of the class the member was
+     *              looked up on
+     * @param name the remapped name of the member
+     */
+    record MappedMember(String owner, String name) {}
+
+    private final MappingTable mappings;
+    private final @Nullable ClasspathIndex index;
+    private final @Nullable MappedHierarchy shared;
+    private final Cache<List<String>> mappedAncestors;
+    private final Cache<StaticStarImport> staticStarImports;
+    private final Cache<Map<String, String>> packageStarImports;
+
+    /**
+     * @param mappings the mappings to find mapped classes in
+     * @param index the index to read classpath classes from, if any
+     * @param budget the estimated size, in bytes, that this cache's tables may take together before the least
+     *               recently used entries are evicted, or {@code 0} for no limit
+     */
+    MappedHierarchy(MappingTable mappings, @Nullable ClasspathIndex index, long budget) {
+        this(mappings, index, null, budget);
+    }
+
+    private MappedHierarchy(MappingTable mappings, @Nullable ClasspathIndex index, @Nullable MappedHierarchy shared, long budget) {
+        this.mappings = mappings;
+        this.index = index;
+        this.shared = shared;
+        // Split evenly, as which table grows largest depends on the sources more than on the mappings
+        long tableBudget = budget > 0 ? Math.max(1, budget / 3) : 0;
+        this.mappedAncestors = new Cache<>(tableBudget, ancestors -> {
+            long size = MemoryEstimates.list(ancestors.size());
+            for (var ancestor : ancestors) {
+                size += MemoryEstimates.string(ancestor);
+            }
+            return size;
+        });
+        this.staticStarImports = new Cache<>(tableBudget, starImport -> MemoryEstimates.object(5, 0)
+                + MemoryEstimates.string(starImport.originalClass())
+                + MemoryEstimates.string(starImport.remappedClass())
+                + MemoryEstimates.stringMap(starImport.methods())
+                + MemoryEstimates.stringMap(starImport.fields())
+                + MemoryEstimates.stringMap(starImport.innerClasses()));
+        this.packageStarImports = new Cache<>(tableBudget, MemoryEstimates::stringMap);
+    }
+
+    /**
+     * {@return a cache for a single set of sources, which caches source-defined classes itself and leaves classpath
+     * classes to this cache}
+     */
+    MappedHierarchy sourceLayer() {
+        // A layer only lives as long as the sources it is used with
+        return new MappedHierarchy(mappings, index, this, 0);
+    }
+
+    /**
+     * {@return the nearest classes with mappings in the hierarchy of the given class, in the order they should be
+     * searched} A class with mappings is its own only entry.
+     */
+    List<String> mappedAncestors(PsiClass psiClass) {
+        if (shared != null && psiClass instanceof PsiCompiledElement) {
+            // The supertypes of a classpath class are all on the classpath
+            return shared.mappedAncestors(psiClass);
+        }
+        var binaryName = ChristenVisitor.binaryName(psiClass);
+        if (index != null && psiClass instanceof PsiCompiledElement) {
+            return mappedAncestors.get(binaryName, () -> findIndexedAncestors(binaryName, psiClass, psiClass.getProject()));
+        }
+        return mappedAncestors.get(binaryName, () -> findMappedAncestors(psiClass));
+    }
+
+    private List<String> findIndexedAncestors(String name, @Nullable PsiClass psiClass, Project project) {
+        if (mappings.hasClass(name)) {
+            return List.of(name);
+        }
+        var indexed = index.find(name);
+        if (indexed == null) {
+            var found = psiClass != null ? psiClass : findClass(name, project);
+            return found != null ? findMappedAncestors(found) : List.of();
+        }
+        var found = new ArrayList<String>();
+        for (var type : indexed.supertypes()) {
+            if (type.equals("java/lang/Object")) {
+                continue;
+            }
+            for (var ancestor : mappedAncestors.get(type, () -> findIndexedAncestors(type, null, project))) {
+                if (!found.contains(ancestor)) {
+                    found.add(ancestor);
+                }
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    private static @Nullable PsiClass findClass(String name, Project project) {
+        // Nested classes are separated by '$' in binary names and by '.' in qualified ones
+        return JavaPsiFacade.getInstance(project).findClass(name.replace('/', '.').replace('$', '.'), GlobalSearchScope.allScope(project));
+    }
+
+    private List<String> findMappedAncestors(PsiClass psiClass) {
+        var binaryName = ChristenVisitor.binaryName(psiClass);
+        if (mappings.hasClass(binaryName)) {
+            return List.of(binaryName);
+        }
+        var found = new ArrayList<String>();
+        for (var type : psiClass.getSupers()) {
+            var typeQualifiedName = type.getQualifiedName();
+            if (typeQualifiedName == null || typeQualifiedName.equals("java.lang.Object")) {
+                continue;
+            }
+            for (var ancestor : mappedAncestors(type)) {
+                if (!found.contains(ancestor)) {
+                    found.add(ancestor);
+                }
+            }
+        }
+        return List.copyOf(found);
+    }
+
+    /**
+     * {@return the mapping of a field looked up on the given class, or {@code null} if no mapped class it could come
+     * from maps it}
+     */
+    @Nullable MappedMember remapField(String name, PsiClass owner) {
+        for (var ancestor : mappedAncestors(owner)) {
+            var mapped = mappings.remapField(ancestor, name);
+            if (mapped != null) {
+                return new MappedMember(ancestor, mapped);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@return the mapping of a method looked up on the given class, or {@code null} if no mapped class it could come
+     * from maps it}
+     */
+    @Nullable MappedMember remapMethod(String name, String descriptor, PsiClass owner) {
+        for (var ancestor : mappedAncestors(owner)) {
+            var mapped = mappings.remapMethod(ancestor, name, descriptor);
+            if (mapped != null) {
+                return new MappedMember(ancestor, mapped);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@return what a static star import of the given class expands to, or {@code null} if the class has no qualified
+     * name}
+     */
+    @Nullable StaticStarImport staticStarImport(PsiClass targetClass) {
+        if (targetClass.getQualifiedName() == null) {
+            return null;
+        }
+        if (shared != null && targetClass instanceof PsiCompiledElement) {
+            return shared.staticStarImport(targetClass);
+        }
+        return staticStarImports.get(ChristenVisitor.binaryName(targetClass), () -> findStaticStarImport(targetClass));
+    }
+
+    private StaticStarImport findStaticStarImport(PsiClass targetClass) {
+        if (index != null && targetClass instanceof PsiCompiledElement) {
+            var binaryName = ChristenVisitor.binaryName(targetClass);
+            var indexed = index.find(binaryName);
+            if (indexed != null) {
+                return findIndexedStaticStarImport(binaryName, indexed, targetClass);
+            }
+        }
+        var originalClass = targetClass.getQualifiedName();
+        var remappedClass = ChristenVisitor.formatAsBefore(mappings.remapClass(ChristenVisitor.binaryName(targetClass)), targetClass);
+        var methods = new HashMap<String, String>();
+        for (var method : targetClass.getAllMethods()) {
+            if (!method.hasModifier(JvmModifier.STATIC)) {
+                continue;
+            }
+            var newMethod = remapMethod(method.getName(), PsiHelper.getBinaryMethodSignature(method), targetClass);
+            if (newMethod != null || !remappedClass.equals(originalClass)) {
+                methods.put(method.getName(), newMethod != null ? newMethod.name() : method.getName());
+            }
+        }
+        var fields = new HashMap<String, String>();
+        for (var field : targetClass.getAllFields()) {
+            if (!field.hasModifier(JvmModifier.STATIC)) {
+                continue;
+            }
+            var newField = remapField(field.getName(), targetClass);
+            if (newField != null || !remappedClass.equals(originalClass)) {
+                fields.put(field.getName(), newField != null ? newField.name() : field.getName());
+            }
+        }
+        var innerClasses = new HashMap<String, String>();
+        putInnerClasses(targetClass, innerClasses);
+        return new StaticStarImport(originalClass, remappedClass, Map.copyOf(methods), Map.copyOf(fields), Map.copyOf(innerClasses));
+    }
+
+    private void putInnerClasses(PsiClass psiClass, Map<String, String> innerClasses) {
+        for (var inner : psiClass.getAllInnerClasses()) {
+            var qualifiedName = inner.getQualifiedName();
+            if (qualifiedName != null) {
+                var remappedInnerClass = ChristenVisitor.formatAsBefore(mappings.remapClass(ChristenVisitor.binaryName(inner)), inner);
+                if (!remappedInnerClass.equals(qualifiedName)) {
+                    innerClasses.put(qualifiedName, remappedInnerClass);
+                }
+            }
+        }
+    }
+
+    private StaticStarImport findIndexedStaticStarImport(String name, ClasspathIndex.IndexedClass indexed, PsiClass targetClass) {
+        var originalClass = targetClass.getQualifiedName();
+        var remappedClass = ChristenVisitor.formatAsBefore(mappings.remapClass(name), indexed.outerClass() != null);
+        // Unlike through PSI, inherited static members are left out: references are matched to a star import by the
+        // class declaring the member, so only the imported class's own members are ever looked up
+        var methods = new HashMap<String, String>();
+        for (var method : indexed.staticMethods()) {
+            var newMethod = remapMethod(method.name(), method.descriptor(), targetClass);
+            if (newMethod != null || !remappedClass.equals(originalClass)) {
+                methods.put(method.name(), newMethod != null ? newMethod.name() : method.name());
+            }
+        }
+        var fields = new HashMap<String, String>();
+        for (var field : indexed.staticFields()) {
+            var newField = remapField(field, targetClass);
+            if (newField != null || !remappedClass.equals(originalClass)) {
+                fields.put(field, newField != null ? newField.name() : field);
+            }
+        }
+        // Member classes are inherited, and are matched by their own qualified name, so supertypes are walked too
+        var innerClasses = new HashMap<String, String>();
+        putIndexedInnerClasses(name, targetClass.getProject(), new HashSet<>(), innerClasses);
+        return new StaticStarImport(originalClass, remappedClass, Map.copyOf(methods), Map.copyOf(fields), Map.copyOf(innerClasses));
+    }
+
+    private void putIndexedInnerClasses(String name, Project project, Set<String> visited, Map<String, String> innerClasses) {
+        if (name.equals("java/lang/Object") || !visited.add(name)) {
+            return;
+        }
+        var indexed = index.find(name);
+        if (indexed == null) {
+            var psiClass = findClass(name, project);
+            if (psiClass != null) {
+                putInnerClasses(psiClass, innerClasses);
+            }
+            return;
+        }
+        for (var member : indexed.memberClasses()) {
+            var qualifiedName = index.qualifiedName(member);
+            if (qualifiedName != null) {
+                var remappedInnerClass = ChristenVisitor.formatAsBefore(mappings.remapClass(member), true);
+                if (!remappedInnerClass.equals(qualifiedName)) {
+                    innerClasses.put(qualifiedName, remappedInnerClass);
+                }
+            }
+        }
+        for (var type : indexed.supertypes()) {
+            putIndexedInnerClasses(type, project, visited, innerClasses);
+        }
+    }
+
+    /**
+     * {@return the remapped qualified names of the classes in the given package whose names change, by original
+     * qualified name}
+     */
+    Map<String, String> packageStarImport(PsiPackage psiPackage) {
+        if (shared != null) {
+            // Sources given to a layer are not part of any source root, so packages hold classpath classes alone
+            return shared.packageStarImport(psiPackage);
+        }
+        return packageStarImports.get(psiPackage.getQualifiedName(), () -> findPackageStarImport(psiPackage));
+    }
+
+    private Map<String, String> findPackageStarImport(PsiPackage psiPackage) {
+        var classes = new HashMap<String, String>();
+        for (var psiClass : psiPackage.getClasses()) {
+            var importPath = psiClass.getQualifiedName();
+            if (importPath != null) {
+                var remapped = ChristenVisitor.formatAsBefore(mappings.remapClass(ChristenVisitor.binaryName(psiClass)), psiClass);
+                if (!remapped.equals(importPath)) {
+                    classes.put(importPath, remapped);
+                }
+            }
+        }
+        return Map.copyOf(classes);
+    }
+
+    /**
+     * {@return the estimated peak size, in bytes, of this cache's tables}
+     */
+    long peakEstimatedBytes() {
+        return mappedAncestors.peakBytes.get() + staticStarImports.peakBytes.get() + packageStarImports.peakBytes.get();
+    }
+
+    /**
+     * {@return the number of entries evicted from this cache's tables to stay within its budget, or dropped after the
+     * garbage collector cleared them}
+     */
+    long evictions() {
+        return mappedAncestors.evictions.get() + staticStarImports.evictions.get() + packageStarImports.evictions.get();
+    }
+
+    /**
+     * A table of derived values by name. Without a budget, values are held strongly for the whole run. With one, they
+     * are held through soft references, so that the garbage collector may clear them under memory pressure before the
+     * budget is reached, and the least recently used are evicted whenever the estimated size of the table exceeds it.
+     * A cleared or evicted value is derived again the next time it is needed.
+     */
+    private static final class Cache<T> {
+        private record Held<T>(SoftReference<T> value, long bytes) {}
+
+        private final long budget;
+        private final ToLongFunction<T> estimator;
+        private final @Nullable Map<String, T> unbounded;
+        private final @Nullable LinkedHashMap<String, Held<T>> bounded;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong peakBytes = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private Cache(long budget, ToLongFunction<T> estimator) {
+            this.budget = budget;
+            this.estimator = estimator;
+            this.unbounded = budget <= 0 ? new ConcurrentHashMap<>() : null;
+            this.bounded = budget <= 0 ? null : new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        private long entryBytes(String key, T value) {
+            return MemoryEstimates.map(1) + MemoryEstimates.string(key) + estimator.applyAsLong(value);
+        }
+
+        T get(String key, Supplier<T> compute) {
+            if (unbounded != null) {
+                var known = unbounded.get(key);
+                if (known != null) {
+                    return known;
+                }
+                var value = compute.get();
+                // Not computeIfAbsent, as computing a value may recurse into the same cache
+                var existing = unbounded.putIfAbsent(key, value);
+                if (existing != null) {
+                    return existing;
+                }
+                long total = bytes.addAndGet(entryBytes(key, value));
+                peakBytes.accumulateAndGet(total, Math::max);
+                return value;
+            }
+            var known = bounded(key);
+            if (known != null) {
+                return known;
+            }
+            // Computed outside the lock, as computing a value may recurse into the same cache
+            var value = compute.get();
+            var held = new Held<>(new SoftReference<>(value), entryBytes(key, value));
+            synchronized (bounded) {
+                var existing = bounded.get(key);
+                var existingValue = existing != null ? existing.value().get() : null;
+                if (existingValue != null) {
+                    return existingValue;
+                }
+                bounded.put(key, held);
+                long total = bytes.addAndGet(held.bytes() - (existing != null ? existing.bytes() : 0));
+                var iterator = bounded.values().iterator();
+                while (total > budget && iterator.hasNext()) {
+                    total = bytes.addAndGet(-iterator.next().bytes());
+                    iterator.remove();
+                    evictions.incrementAndGet();
+                }
+                peakBytes.accumulateAndGet(total, Math::max);
+            }
+            return value;
+        }
+
+        private @Nullable T bounded(String key) {
+            synchronized (bounded) {
+                var held = bounded.get(key);
+                if (held == null) {
+                    return null;
+                }
+                var value = held.value().get();
+                if (value == null) {
+                    bounded.remove(key);
+                    bytes.addAndGet(-held.bytes());
+                    evictions.incrementAndGet();
+                }
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dev.lukebemish.christen;
+
+import net.neoforged.srgutils.IMappingFile;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The class and member names christen remaps with, either held on the heap as loaded or {@link SpilledMappings
+ * spilled} to a memory-mapped file. Classes and owners are given by binary name.
+ */
+interface MappingTable {
+    static MappingTable of(IMappingFile mappings) {
+        return new Loaded(mappings);
+    }
+
+    boolean hasClass(String name);
+
+    /**
+     * {@return the remapped name of a class} A nested class without mappings of its own keeps its name within its
+     * remapped outer class, and any other class without mappings keeps its name.
+     */
+    String remapClass(String name);
+
+    /**
+     * {@return the remapped name of a field declared in the given mapped class, or {@code null} if it has no mapping}
+     */
+    @Nullable String remapField(String owner, String name);
+
+    /**
+     * {@return the remapped name of a method declared in the given mapped class, or {@code null} if it has no mapping}
+     */
+    @Nullable String remapMethod(String owner, String name, String descriptor);
+
+    record Loaded(IMappingFile mappings) implements MappingTable {
+        @Override
+        public boolean hasClass(String name) {
+            return mappings.getClass(name) != null;
+        }
+
+        @Override
+        public String remapClass(String name) {
+            return mappings.remapClass(name);
+        }
+
+        @Override
+        public @Nullable String remapField(String owner, String name) {
+            var clazz = mappings.getClass(owner);
+            return clazz != null && clazz.getField(name) != null ? clazz.remapField(name) : null;
+        }
+
+        @Override
+        public @Nullable String remapMethod(String owner, String name, String descriptor) {
+            var clazz = mappings.getClass(owner);
+            return clazz != null && clazz.getMethod(name, descriptor) != null ? clazz.remapMethod(name, descriptor) : null;
+        }
+    }
+}
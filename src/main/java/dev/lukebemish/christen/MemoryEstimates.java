@@ -0,0 +1,84 @@
+package dev.lukebemish.christen;
+
+import net.neoforged.srgutils.IMappingFile;
+
+import java.util.Map;
+
+/**
+ * Rough sizes of the objects christen's own structures are built from, assuming a 64-bit JVM with compressed
+ * references and Latin-1 strings, so that the memory those structures retain can be reported without a heap dump.
+ * Strings are counted as owned by every structure holding them, so the estimates err on the high side.
+ */
+final class MemoryEstimates {
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+
+    private MemoryEstimates() {}
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * {@return the size of an object with the given number of reference fields and bytes of primitive fields}
+     */
+    static long object(int references, int primitiveBytes) {
+        return align(HEADER + (long) REFERENCE * references + primitiveBytes);
+    }
+
+    /**
+     * {@return the size of a primitive or reference array with the given total element size}
+     */
+    static long array(long elementBytes) {
+        return align(HEADER + 4 + elementBytes);
+    }
+
+    static long string(String value) {
+        return string(value.length());
+    }
+
+    private static long string(int length) {
+        return object(1, 4 + 1 + 1) + array(length);
+    }
+
+    /**
+     * {@return the size of a hash map with the given number of entries, excluding the keys and values themselves}
+     */
+    static long map(int entries) {
+        // each entry takes a node and, at the default load factor, up to two table slots
+        return object(4, 16) + array((long) REFERENCE * 2 * entries) + entries * object(3, 4);
+    }
+
+    static long list(int entries) {
+        return object(1, 4) + array((long) REFERENCE * entries);
+    }
+
+    /**
+     * {@return the size of loaded mappings, counting each class, field and method node with its names and the tables
+     * holding it}
+     */
+    static long mappings(IMappingFile mappings) {
+        long size = map(mappings.getClasses().size()) + map(mappings.getPackages().size());
+        for (var clazz : mappings.getClasses()) {
+            size += object(6, 0) + string(clazz.getOriginal()) + string(clazz.getMapped());
+            size += map(clazz.getFields().size()) + map(clazz.getMethods().size());
+            for (var field : clazz.getFields()) {
+                size += object(5, 0) + string(field.getOriginal()) + string(field.getMapped());
+            }
+            for (var method : clazz.getMethods()) {
+                // methods are keyed by name and descriptor together
+                size += object(6, 0) + string(method.getOriginal()) + string(method.getDescriptor()) + string(method.getMapped());
+                size += string(method.getOriginal().length() + method.getDescriptor().length());
+            }
+        }
+        return size;
+    }
+
+    static long stringMap(Map<String, String> map) {
+        long size = map(map.size());
+        for (var entry : map.entrySet()) {
+            size += string(entry.getKey()) + string(entry.getValue());
+        }
+        return size;
+    }
+}
@@ -0,0 +1,211 @@
+package dev.lukebemish.christen;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * A file of records sorted by key, memory-mapped when read so that a record is found by binary search without loading
+ * the rest of the file onto the heap. Keys are compared by their UTF-8 bytes; what follows the key in a record is up
+ * to whoever writes it, as a sequence of integers and strings read back in the same order through a {@link Cursor}.
+ */
+final class RecordFile {
+    private static final int MAGIC = 0x43485249;
+    private static final int HEADER_BYTES = 12;
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private RecordFile(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Maps a record file written by a {@link Writer}. The mapping stays valid after this returns, and is released once
+     * the returned file is no longer reachable.
+     * @param version the format version the file must have been written with
+     * @throws IOException if the file cannot be read, or is not a record file of the given version
+     */
+    static RecordFile open(Path path, int version) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a record file: " + path);
+            }
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != version) {
+                throw new IOException("Not a record file of version " + version + ": " + path);
+            }
+            return new RecordFile(buffer, buffer.getInt(8));
+        }
+    }
+
+    /**
+     * {@return a cursor positioned just after the key of the record with the given key, or {@code null} if there is
+     * no such record}
+     */
+    @Nullable Cursor find(String key) {
+        var bytes = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(HEADER_BYTES + 4 * middle);
+            int comparison = compareKey(offset, bytes);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return new Cursor(offset + 4 + bytes.length);
+            }
+        }
+        return null;
+    }
+
+    private int compareKey(int offset, byte[] key) {
+        int length = buffer.getInt(offset);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + 4 + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * {@return the size of the file, in bytes}
+     */
+    long bytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Reads the contents of a record in order. Reads are absolute, so cursors over the same file may be used from
+     * different threads at once.
+     */
+    final class Cursor {
+        private int position;
+
+        private Cursor(int position) {
+            this.position = position;
+        }
+
+        int readInt() {
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        String readString() {
+            var bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, bytes);
+            position += 4 + bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skipString() {
+            position += 4 + buffer.getInt(position);
+        }
+    }
+
+    /**
+     * The contents of a record after its key, written in the order they are to be read.
+     */
+    static final class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private Record() {}
+
+        Record writeInt(int value) {
+            bytes.write(value >>> 24);
+            bytes.write(value >>> 16);
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        Record writeString(String value) {
+            var encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(encoded.length);
+            bytes.writeBytes(encoded);
+            return this;
+        }
+    }
+
+    static final class Writer {
+        private final TreeMap<byte[], Record> records = new TreeMap<>(Arrays::compareUnsigned);
+
+        /**
+         * {@return the record with the given key, to write its contents to} A later record with the same key replaces
+         * an earlier one.
+         */
+        Record add(String key) {
+            var record = new Record();
+            records.put(key.getBytes(StandardCharsets.UTF_8), record);
+            return record;
+        }
+
+        /**
+         * Writes the records to a file, replacing it only once it is complete so that a reader never maps a partly
+         * written file.
+         */
+        void write(Path path, int version) throws IOException {
+            long size = HEADER_BYTES + 4L * records.size();
+            for (var entry : records.entrySet()) {
+                size += 4 + entry.getKey().length + entry.getValue().bytes.size();
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Too many records to map, at " + size + " bytes: " + path);
+            }
+            var directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            var temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    output.writeInt(MAGIC);
+                    output.writeInt(version);
+                    output.writeInt(records.size());
+                    int offset = HEADER_BYTES + 4 * records.size();
+                    for (var entry : records.entrySet()) {
+                        output.writeInt(offset);
+                        offset += 4 + entry.getKey().length + entry.getValue().bytes.size();
+                    }
+                    for (var entry : records.entrySet()) {
+                        output.writeInt(entry.getKey().length);
+                        output.write(entry.getKey());
+                        entry.getValue().bytes.writeTo(output);
+                    }
+                }
+                try {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.lukebemish.christen;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.search.GlobalSearchScope;
+import net.neoforged.jst.api.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Counts how often classes are looked up as member owners, how often packages are star-imported and how often classes
+ * are statically star-imported during a run, so that the hottest of them can be resolved ahead of time on the next
+ * run.
+ */
+final class RemapProfile {
+    private static final int MAX_ENTRIES = 1024;
+    private static final String CLASS_PREFIX = "class\t";
+    private static final String PACKAGE_PREFIX = "package\t";
+    private static final String STATIC_PREFIX = "static\t";
+
+    private final Map<String, LongAdder> classes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> packages = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> staticImports = new ConcurrentHashMap<>();
+    private final LongAdder prewarmed = new LongAdder();
+
+    void recordClass(String qualifiedName) {
+        classes.computeIfAbsent(qualifiedName, k -> new LongAdder()).increment();
+    }
+
+    void recordPackage(String name) {
+        packages.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    void recordStaticImport(String qualifiedName) {
+        staticImports.computeIfAbsent(qualifiedName, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * {@return how many entries of the previous run's profile have been resolved into the hierarchy caches so far}
+     */
+    long prewarmed() {
+        return prewarmed.sum();
+    }
+
+    /**
+     * {@return the estimated size, in bytes, of the counts held so far}
+     */
+    long estimatedBytes() {
+        long size = 0;
+        for (var counts : List.of(classes, packages, staticImports)) {
+            size += MemoryEstimates.map(counts.size());
+            for (var name : counts.keySet()) {
+                size += MemoryEstimates.string(name) + MemoryEstimates.object(2, 8);
+            }
+        }
+        return size;
+    }
+
+    void write(Path path) throws IOException {
+        var lines = new ArrayList<String>();
+        hottest(classes).forEach(name -> lines.add(CLASS_PREFIX + name));
+        hottest(packages).forEach(name -> lines.add(PACKAGE_PREFIX + name));
+        hottest(staticImports).forEach(name -> lines.add(STATIC_PREFIX + name));
+        Files.write(path, lines);
+    }
+
+    private static List<String> hottest(Map<String, LongAdder> counts) {
+        return counts.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, LongAdder>>comparingLong(entry -> entry.getValue().sum()).reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_ENTRIES)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Resolves the classes, packages and static star-import targets listed in a profile written by a previous run,
+     * filling the shared hierarchy and star import caches ahead of the files that will need them. Each entry is
+     * submitted to the executor separately; entries that no longer resolve are skipped, and entries still queued once
+     * the executor is shut down are not started.
+     */
+    void prewarm(Path path, Project project, MappedHierarchy hierarchy, ExecutorService executor, Logger logger) throws IOException {
+        var facade = JavaPsiFacade.getInstance(project);
+        var scope = GlobalSearchScope.allScope(project);
+        for (var line : Files.readAllLines(path)) {
+            if (line.startsWith(CLASS_PREFIX)) {
+                var name = line.substring(CLASS_PREFIX.length());
+                executor.execute(() -> prewarmEntry(name, logger, () -> {
+                    var psiClass = facade.findClass(name, scope);
+                    if (psiClass == null) {
+                        return false;
+                    }
+                    hierarchy.mappedAncestors(psiClass);
+                    return true;
+                }));
+            } else if (line.startsWith(PACKAGE_PREFIX)) {
+                var name = line.substring(PACKAGE_PREFIX.length());
+                executor.execute(() -> prewarmEntry(name, logger, () -> {
+                    var psiPackage = facade.findPackage(name);
+                    if (psiPackage == null) {
+                        return false;
+                    }
+                    hierarchy.packageStarImport(psiPackage);
+                    return true;
+                }));
+            } else if (line.startsWith(STATIC_PREFIX)) {
+                var name = line.substring(STATIC_PREFIX.length());
+                executor.execute(() -> prewarmEntry(name, logger, () -> {
+                    var psiClass = facade.findClass(name, scope);
+                    if (psiClass == null) {
+                        return false;
+                    }
+                    hierarchy.staticStarImport(psiClass);
+                    return true;
+                }));
+            }
+        }
+    }
+
+    private void prewarmEntry(String name, Logger logger, BooleanSupplier prewarm) {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            if (prewarm.getAsBoolean()) {
+                prewarmed.increment();
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Could not prewarm %s: %s", name, e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.lukebemish.christen;
+
+import net.neoforged.srgutils.IMappingFile;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Mappings spilled to a memory-mapped {@link RecordFile}, for when holding them on the heap would take too much of it.
+ * Each class is a record of its mapped name followed by its field and method mappings, so a lookup decodes only the
+ * class it is for; the shared caches in {@link MappedHierarchy} keep repeated lookups off the file.
+ */
+final class SpilledMappings implements MappingTable {
+    private static final int VERSION = 1;
+
+    private final RecordFile file;
+
+    private SpilledMappings(RecordFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes the given mappings to a file and maps it. The loaded mappings are not needed afterwards.
+     */
+    static SpilledMappings spill(IMappingFile mappings, Path path) throws IOException {
+        var writer = new RecordFile.Writer();
+        for (var clazz : mappings.getClasses()) {
+            var record = writer.add(clazz.getOriginal()).writeString(clazz.getMapped());
+            record.writeInt(clazz.getFields().size());
+            for (var field : clazz.getFields()) {
+                record.writeString(field.getOriginal()).writeString(field.getMapped());
+            }
+            record.writeInt(clazz.getMethods().size());
+            for (var method : clazz.getMethods()) {
+                record.writeString(method.getOriginal()).writeString(method.getDescriptor()).writeString(method.getMapped());
+            }
+        }
+        writer.write(path, VERSION);
+        return new SpilledMappings(RecordFile.open(path, VERSION));
+    }
+
+    /**
+     * {@return the size of the spilled file, in bytes}
+     */
+    long bytes() {
+        return file.bytes();
+    }
+
+    @Override
+    public boolean hasClass(String name) {
+        return file.find(name) != null;
+    }
+
+    @Override
+    public String remapClass(String name) {
+        var cursor = file.find(name);
+        if (cursor != null) {
+            return cursor.readString();
+        }
+        // The same fallback as IMappingFile#remapClass, so that either table remaps alike
+        int index = name.lastIndexOf('$');
+        if (index != -1) {
+            return remapClass(name.substring(0, index)) + name.substring(index);
+        }
+        return name;
+    }
+
+    @Override
+    public @Nullable String remapField(String owner, String name) {
+        var cursor = file.find(owner);
+        if (cursor == null) {
+            return null;
+        }
+        cursor.skipString();
+        int fields = cursor.readInt();
+        for (int i = 0; i < fields; i++) {
+            if (cursor.readString().equals(name)) {
+                return cursor.readString();
+            }
+            cursor.skipString();
+        }
+        return null;
+    }
+
+    @Override
+    public @Nullable String remapMethod(String owner, String name, String descriptor) {
+        var cursor = file.find(owner);
+        if (cursor == null) {
+            return null;
+        }
+        cursor.skipString();
+        int fields = cursor.readInt();
+        for (int i = 0; i < fields; i++) {
+            cursor.skipString();
+            cursor.skipString();
+        }
+        int methods = cursor.readInt();
+        for (int i = 0; i < methods; i++) {
+            var methodName = cursor.readString();
+            var methodDescriptor = cursor.readString();
+            if (methodName.equals(name) && methodDescriptor.equals(descriptor)) {
+                return cursor.readString();
+            }
+            cursor.skipString();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package dev.lukebemish.christen;
+
+import com.intellij.openapi.util.TextRange;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A reference to a mapped symbol found while remapping a file. Classes are identified by their binary name alone;
+ * members by their owner's binary name, their name and, for methods, their descriptor.
+ */
+record SymbolUsage(Kind kind, @Nullable String owner, String name, @Nullable String descriptor, String mapped, TextRange range) {
+    enum Kind {
+        CLASS,
+        FIELD,
+        METHOD
+    }
+
+    /**
+     * {@return a single JSON line holding every usage found in a file}
+     */
+    static String toJsonLine(String file, List<SymbolUsage> usages) {
+        var builder = new StringBuilder();
+        builder.append("{\"file\":");
+        appendString(builder, file);
+        builder.append(",\"usages\":[");
+        for (int i = 0; i < usages.size(); i++) {
+            if (i != 0) {
+                builder.append(',');
+            }
+            usages.get(i).appendJson(builder);
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    private void appendJson(StringBuilder builder) {
+        builder.append("{\"kind\":\"").append(kind.name().toLowerCase(Locale.ROOT)).append('"');
+        if (owner != null) {
+            builder.append(",\"owner\":");
+            appendString(builder, owner);
+        }
+        builder.append(",\"name\":");
+        appendString(builder, name);
+        if (descriptor != null) {
+            builder.append(",\"descriptor\":");
+            appendString(builder, descriptor);
+        }
+        builder.append(",\"mapped\":");
+        appendString(builder, mapped);
+        builder.append(",\"start\":").append(range.getStartOffset());
+        builder.append(",\"end\":").append(range.getEndOffset());
+        builder.append('}');
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        builder.append('"');
+    }
+}
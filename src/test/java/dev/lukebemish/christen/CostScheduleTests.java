@@ -0,0 +1,62 @@
+package dev.lukebemish.christen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+class CostScheduleTests {
+    @Test
+    void dispatchLongestFirst() throws IOException {
+        var timings = Files.createTempFile("christen-test", ".tsv");
+        Files.write(timings, List.of(
+                "/tmp/input.jar!/abc/BClass.java\t300",
+                "/abc/AClass.java\t100"
+        ));
+
+        var entries = List.of(
+                entry("META-INF/MANIFEST.MF", 50),
+                entry("abc/AClass.java", 10),
+                entry("abc/data.txt", 5000),
+                entry("abc/BClass.java", 10),
+                // Untimed, and costed at the 20 microseconds per byte the timed sources took
+                entry("abc/CClass.java", 1000),
+                entry("abc/DClass.java", 1)
+        );
+
+        Assertions.assertEquals(List.of(
+                "META-INF/MANIFEST.MF",
+                "abc/CClass.java",
+                "abc/BClass.java",
+                "abc/AClass.java",
+                "abc/DClass.java",
+                "abc/data.txt"
+        ), CostSchedule.dispatchOrder(entries, CostSchedule.readTimings(timings)));
+    }
+
+    @Test
+    void dispatchBySizeWithoutTimings() throws IOException {
+        var timings = Files.createTempDirectory("christen-test").resolve("missing.tsv");
+
+        var entries = List.of(
+                entry("abc/AClass.java", 10),
+                entry("abc/BClass.java", 30),
+                entry("abc/CClass.java", 20)
+        );
+
+        Assertions.assertEquals(List.of(
+                "abc/BClass.java",
+                "abc/CClass.java",
+                "abc/AClass.java"
+        ), CostSchedule.dispatchOrder(entries, CostSchedule.readTimings(timings)));
+    }
+
+    private static ZipEntry entry(String name, long size) {
+        var entry = new ZipEntry(name);
+        entry.setSize(size);
+        return entry;
+    }
+}
@@ -0,0 +1,177 @@
+package dev.lukebemish.christen.test;
+
+import dev.lukebemish.christen.ChristenMain;
+import net.neoforged.srgutils.IMappingBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+class ClasspathIndexTests {
+    @Test
+    void remapWithClasspathIndex() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static void staticMethod(ToRemap remap) {}
+                        
+                            public static ToRemap STATIC_FIELD;
+                        
+                            public static class Inner {}
+                        }
+                        """
+        ), new Utilities.Source(
+                "def.Base",
+                """
+                        package def;
+                        
+                        public class Base {
+                            public void method() {}
+                        }
+                        """
+        ), new Utilities.Source(
+                "def.Sub",
+                """
+                        package def;
+                        
+                        public class Sub extends Base implements Comparable<Sub> {
+                            public void subMethod() {}
+                        
+                            @Override
+                            public void method() {}
+                        
+                            @Override
+                            public int compareTo(Sub other) {
+                                return 0;
+                            }
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var sources = List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import def.*;
+                        import static def.ToRemap.*;
+                        
+                        public class TestClass {
+                            public void method() {
+                                staticMethod(null)
+                                Inner inner = new Inner();
+                                STATIC_FIELD = null;
+                                ToRemap toRemap = null;
+                            }
+                        }
+                        """
+        ), new Utilities.Source(
+                "abc.OtherClass",
+                """
+                        package abc;
+                        
+                        import def.Sub;
+                        
+                        public class OtherClass {
+                            public void method(Sub sub) {
+                                sub.subMethod();
+                                sub.method();
+                            }
+                        }
+                        """
+        ));
+        var sourcesJar = Utilities.createTestSources(sources);
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .method("(Ldef/ToRemap;)V", "staticMethod", "remappedStaticMethod").build()
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .addClass("def/ToRemap$Inner", "ghi/Remapped$RemappedInner").build()
+                .addClass("def/Base", "ghi/RemappedBase")
+                .method("()V", "method", "remappedMethod").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var indexDirectory = Files.createTempDirectory("christen-test");
+
+        // The first run indexes the classpath jar, and the second reads that index back without writing it again
+        remap(binaryJar, mappingsFile, sourcesJar, indexDirectory);
+        var indexFiles = list(indexDirectory);
+        Assertions.assertEquals(1, indexFiles.size(), indexFiles.toString());
+        var indexFile = indexFiles.getFirst();
+        var written = Files.getLastModifiedTime(indexFile);
+        Files.setLastModifiedTime(indexFile, FileTime.fromMillis(written.toMillis() - 10_000));
+        var backdated = Files.getLastModifiedTime(indexFile);
+
+        remap(binaryJar, mappingsFile, sourcesJar, indexDirectory);
+        Assertions.assertEquals(List.of(indexFile), list(indexDirectory));
+        Assertions.assertEquals(backdated, Files.getLastModifiedTime(indexFile));
+    }
+
+    private static void remap(Path binaryJar, Path mappingsFile, Path sourcesJar, Path indexDirectory) throws IOException {
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+        var report = Files.createTempFile("christen-test", ".tsv");
+
+        Assertions.assertEquals(0, ChristenMain.innerMain(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                "--christen-classpath-index="+indexDirectory.toAbsolutePath(),
+                "--christen-memory-report="+report.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+
+        var indexLine = Files.readAllLines(report).stream().filter(line -> line.startsWith("index\t")).findFirst().orElseThrow();
+        Assertions.assertNotEquals("index\t0\tmapped", indexLine);
+
+        Utilities.verifyContents(outputFile, List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import def.*;import ghi.Remapped;
+                        import static def.ToRemap.*;import static ghi.Remapped.remappedStaticMethod;import ghi.Remapped.RemappedInner;import static ghi.Remapped.REMAPPED_STATIC_FIELD;
+                        
+                        public class TestClass {
+                            public void method() {
+                                remappedStaticMethod(null)
+                                RemappedInner inner = new RemappedInner();
+                                REMAPPED_STATIC_FIELD = null;
+                                Remapped toRemap = null;
+                            }
+                        }
+                        """
+        ), new Utilities.Source(
+                "abc.OtherClass",
+                """
+                        package abc;
+                        
+                        import def.Sub;
+                        
+                        public class OtherClass {
+                            public void method(Sub sub) {
+                                sub.subMethod();
+                                sub.remappedMethod();
+                            }
+                        }
+                        """
+        )));
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
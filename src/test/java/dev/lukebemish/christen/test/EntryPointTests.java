@@ -0,0 +1,114 @@
+package dev.lukebemish.christen.test;
+
+import dev.lukebemish.christen.ChristenMain;
+import net.neoforged.srgutils.IMappingBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+class EntryPointTests {
+    @Test
+    void enablesChristenByDefault() throws IOException {
+        remap();
+    }
+
+    @Test
+    void keepsExplicitEnableOption() throws IOException {
+        remap("--enable-christen=true");
+        remap("--enable-christen");
+    }
+
+    @Test
+    void scheduleByPreviousTimings() throws IOException {
+        var timings = Files.createTempDirectory("christen-test").resolve("timings.tsv");
+
+        // The first run has no timings to schedule by yet, and writes those the second run is scheduled by
+        remap("--christen-schedule="+timings.toAbsolutePath(), "--christen-timings="+timings.toAbsolutePath());
+        Assertions.assertEquals(2, Files.readAllLines(timings).size());
+        remap("--christen-schedule", timings.toAbsolutePath().toString(), "--christen-timings="+timings.toAbsolutePath());
+    }
+
+    private static void remap(String... options) throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {}
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var sources = List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import def.ToRemap;
+                        
+                        public class TestClass {}
+                        """
+        ), new Utilities.Source(
+                "abc.OtherClass",
+                """
+                        package abc;
+                        
+                        public class OtherClass {
+                            def.ToRemap field;
+                        }
+                        """
+        ));
+        var sourcesJar = Utilities.createTestSources(sources);
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped").build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+
+        var args = new ArrayList<>(List.of(options));
+        args.addAll(List.of(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+        Assertions.assertEquals(0, ChristenMain.innerMain(args.toArray(String[]::new)));
+
+        Assertions.assertEquals(entryNames(sourcesJar), entryNames(outputFile));
+        Utilities.verifyContents(outputFile, List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import ghi.Remapped;
+                        
+                        public class TestClass {}
+                        """
+        ), new Utilities.Source(
+                "abc.OtherClass",
+                """
+                        package abc;
+                        
+                        public class OtherClass {
+                            ghi.Remapped field;
+                        }
+                        """
+        )));
+    }
+
+    private static List<String> entryNames(Path jar) throws IOException {
+        try (var zip = new ZipFile(jar.toFile())) {
+            return Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList();
+        }
+    }
+}
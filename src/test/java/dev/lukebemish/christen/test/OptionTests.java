@@ -0,0 +1,240 @@
+package dev.lukebemish.christen.test;
+
+import net.neoforged.jst.cli.Main;
+import net.neoforged.srgutils.IMappingBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class OptionTests {
+    private static final List<Utilities.Source> SOURCES = List.of(new Utilities.Source(
+            "abc.TestClass",
+            """
+                    package abc;
+                    
+                    import def.*;
+                    import static def.ToRemap.*;
+                    
+                    public class TestClass {
+                        public void method() {
+                            ToRemap.STATIC_FIELD = null;
+                            STATIC_FIELD = null;
+                        }
+                    }
+                    """
+    ), new Utilities.Source(
+            "abc.OtherClass",
+            """
+                    package abc;
+                    
+                    public class OtherClass {}
+                    """
+    ));
+
+    private static final List<Utilities.Source> REMAPPED = List.of(new Utilities.Source(
+            "abc.TestClass",
+            """
+                    package abc;
+                    
+                    import def.*;import ghi.Remapped;
+                    import static def.ToRemap.*;import static ghi.Remapped.REMAPPED_STATIC_FIELD;
+                    
+                    public class TestClass {
+                        public void method() {
+                            Remapped.REMAPPED_STATIC_FIELD = null;
+                            REMAPPED_STATIC_FIELD = null;
+                        }
+                    }
+                    """
+    ), new Utilities.Source(
+            "abc.OtherClass",
+            """
+                    package abc;
+                    
+                    public class OtherClass {}
+                    """
+    ));
+
+    private static void remap(String... options) throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static ToRemap STATIC_FIELD;
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+        var sourcesJar = Utilities.createTestSources(SOURCES);
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+
+        var arguments = new ArrayList<>(List.of(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath()
+        ));
+        arguments.addAll(List.of(options));
+        arguments.add(sourcesJar.toAbsolutePath().toString());
+        arguments.add(outputFile.toAbsolutePath().toString());
+        Assertions.assertEquals(0, Main.innerMain(arguments.toArray(String[]::new)));
+
+        Utilities.verifyContents(outputFile, REMAPPED);
+    }
+
+    @Test
+    void writeAndPrewarmFromProfile() throws IOException {
+        Path profile = Files.createTempDirectory("christen-test").resolve("profile.txt");
+
+        remap("--christen-profile="+profile.toAbsolutePath());
+        var written = Files.readAllLines(profile);
+        Assertions.assertTrue(written.contains("class\tdef.ToRemap"), written.toString());
+        Assertions.assertTrue(written.contains("package\tdef"), written.toString());
+        Assertions.assertTrue(written.contains("static\tdef.ToRemap"), written.toString());
+
+        // The second run prewarms from the profile written by the first, and must remap the same way
+        remap("--christen-profile="+profile.toAbsolutePath());
+        var rewritten = Files.readAllLines(profile);
+        Assertions.assertTrue(rewritten.contains("class\tdef.ToRemap"), rewritten.toString());
+        Assertions.assertTrue(rewritten.contains("package\tdef"), rewritten.toString());
+        Assertions.assertTrue(rewritten.contains("static\tdef.ToRemap"), rewritten.toString());
+    }
+
+    @Test
+    void awaitPrewarmBeforeFirstFile() throws IOException {
+        Path profile = Files.createTempDirectory("christen-test").resolve("profile.txt");
+        Path report = Files.createTempFile("christen-test", ".tsv");
+
+        remap("--christen-profile="+profile.toAbsolutePath(), "--christen-memory-report="+report.toAbsolutePath());
+        Assertions.assertEquals(0, readReport(report).get("prewarmed"));
+
+        // Every entry of the profile must be in the caches by the time the first file is remapped
+        remap("--christen-profile="+profile.toAbsolutePath(), "--christen-await-prewarm", "--christen-memory-report="+report.toAbsolutePath());
+        var sizes = readReport(report);
+        Assertions.assertEquals(Files.readAllLines(profile).size(), sizes.get("prewarmed"), sizes.toString());
+    }
+
+    @Test
+    void writeTimings() throws IOException {
+        Path timings = Files.createTempFile("christen-test", ".tsv");
+
+        remap("--christen-timings="+timings.toAbsolutePath());
+
+        var lines = Files.readAllLines(timings);
+        Assertions.assertEquals(2, lines.size(), lines.toString());
+        Assertions.assertTrue(lines.stream().anyMatch(line -> line.contains("TestClass.java\t")), lines.toString());
+        Assertions.assertTrue(lines.stream().anyMatch(line -> line.contains("OtherClass.java\t")), lines.toString());
+        var times = lines.stream().map(line -> Long.parseLong(line.substring(line.lastIndexOf('\t') + 1))).toList();
+        Assertions.assertTrue(times.get(0) >= times.get(1), lines.toString());
+    }
+
+    @Test
+    void writeMemoryReport() throws IOException {
+        Path report = Files.createTempFile("christen-test", ".tsv");
+
+        remap("--christen-memory-report="+report.toAbsolutePath());
+
+        var sizes = readReport(report);
+        Assertions.assertEquals(Set.of("mappings", "hierarchy", "visitor", "timings", "usages", "profile", "index", "heap", "evictions", "prewarmed"), sizes.keySet());
+        sizes.values().forEach(size -> Assertions.assertTrue(size >= 0, sizes.toString()));
+        Assertions.assertTrue(sizes.get("hierarchy") > 0, sizes.toString());
+        Assertions.assertTrue(sizes.get("visitor") > 0, sizes.toString());
+        Assertions.assertTrue(sizes.get("heap") > 0, sizes.toString());
+        Assertions.assertEquals(0, sizes.get("evictions"), sizes.toString());
+    }
+
+    @Test
+    void writeOtherOutputsWhenOneFails() throws IOException {
+        // A directory cannot be written as a file, so the timings fail but must not stop the report from being written
+        Path timings = Files.createTempDirectory("christen-test");
+        Path report = Files.createTempFile("christen-test", ".tsv");
+        Files.delete(report);
+        var mappingsFile = Utilities.createTestMappings(IMappingBuilder.create("source", "target").build().getMap("source", "target"));
+        var sourcesJar = Utilities.createTestSources(SOURCES);
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+
+        try {
+            Assertions.assertNotEquals(0, Main.innerMain(
+                    "--enable-christen",
+                    "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                    "--christen-timings="+timings.toAbsolutePath(),
+                    "--christen-memory-report="+report.toAbsolutePath(),
+                    sourcesJar.toAbsolutePath().toString(),
+                    outputFile.toAbsolutePath().toString()
+            ));
+        } catch (UncheckedIOException e) {
+            Assertions.assertTrue(e.getMessage().contains(timings.toString()), e.toString());
+        }
+
+        Assertions.assertTrue(readReport(report).containsKey("mappings"));
+    }
+
+    @Test
+    void remapWithinHeapBudget() throws IOException {
+        Path report = Files.createTempFile("christen-test", ".tsv");
+
+        // Too small to hold either the mappings or a single cache entry
+        remap("--christen-heap-budget=1", "--christen-memory-report="+report.toAbsolutePath());
+
+        var sizes = readReport(report);
+        Assertions.assertTrue(Files.readAllLines(report).contains("mappings\t"+sizes.get("mappings")+"\tspilled"), sizes.toString());
+        Assertions.assertTrue(sizes.get("mappings") > 0, sizes.toString());
+        Assertions.assertTrue(sizes.get("evictions") > 0, sizes.toString());
+        Assertions.assertTrue(sizes.get("hierarchy") <= 1, sizes.toString());
+    }
+
+    @Test
+    void remapWithinLargeHeapBudget() throws IOException {
+        Path report = Files.createTempFile("christen-test", ".tsv");
+
+        remap("--christen-heap-budget=64m", "--christen-memory-report="+report.toAbsolutePath());
+
+        var sizes = readReport(report);
+        Assertions.assertFalse(Files.readAllLines(report).contains("mappings\t"+sizes.get("mappings")+"\tspilled"), sizes.toString());
+        Assertions.assertEquals(0, sizes.get("evictions"), sizes.toString());
+        Assertions.assertTrue(sizes.get("hierarchy") > 0, sizes.toString());
+    }
+
+    @Test
+    void rejectNegativeHeapBudget() throws IOException {
+        var mappingsFile = Utilities.createTestMappings(IMappingBuilder.create("source", "target").build().getMap("source", "target"));
+        var sourcesJar = Utilities.createTestSources(SOURCES);
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+
+        Assertions.assertNotEquals(0, Main.innerMain(
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                "--christen-heap-budget=-1",
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+    }
+
+    private static Map<String, Long> readReport(Path report) throws IOException {
+        var sizes = new HashMap<String, Long>();
+        for (var line : Files.readAllLines(report)) {
+            var parts = line.split("\t");
+            Assertions.assertEquals(3, parts.length, line);
+            sizes.put(parts[0], Long.parseLong(parts[1]));
+        }
+        return sizes;
+    }
+}
@@ -89,4 +89,265 @@ public void method() {
                         """
         )));
     }
+
+    @Test
+    void writeUsages() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static void staticMethod(ToRemap remap) {}
+
+                            public static ToRemap STATIC_FIELD;
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var source = """
+                package abc;
+                
+                public class TestClass {
+                    public void method() {
+                        def.ToRemap.staticMethod(def.ToRemap.STATIC_FIELD);
+                    }
+                }
+                """;
+        var sourcesJar = Utilities.createTestSources(List.of(new Utilities.Source("abc.TestClass", source)));
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .method("(Ldef/ToRemap;)V", "staticMethod", "remappedStaticMethod").build()
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+        var usagesFile = Files.createTempFile("christen-test", ".jsonl");
+
+        Assertions.assertEquals(0, Main.innerMain(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                "--christen-usages="+usagesFile.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+
+        var lines = Files.readAllLines(usagesFile);
+        Assertions.assertEquals(1, lines.size());
+        var line = lines.getFirst();
+        Assertions.assertTrue(line.contains("TestClass.java"), line);
+
+        int methodStart = source.indexOf("staticMethod");
+        Assertions.assertTrue(line.contains("{\"kind\":\"method\",\"owner\":\"def/ToRemap\",\"name\":\"staticMethod\",\"descriptor\":\"(Ldef/ToRemap;)V\",\"mapped\":\"remappedStaticMethod\",\"start\":"+methodStart+",\"end\":"+(methodStart+"staticMethod".length())+"}"), line);
+        int fieldStart = source.indexOf("STATIC_FIELD");
+        Assertions.assertTrue(line.contains("{\"kind\":\"field\",\"owner\":\"def/ToRemap\",\"name\":\"STATIC_FIELD\",\"mapped\":\"REMAPPED_STATIC_FIELD\",\"start\":"+fieldStart+",\"end\":"+(fieldStart+"STATIC_FIELD".length())+"}"), line);
+        int classStart = source.indexOf("ToRemap");
+        Assertions.assertTrue(line.contains("{\"kind\":\"class\",\"name\":\"def/ToRemap\",\"mapped\":\"ghi/Remapped\",\"start\":"+classStart+",\"end\":"+(classStart+"ToRemap".length())+"}"), line);
+    }
+
+    @Test
+    void writeImportUsages() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static ToRemap STATIC_FIELD;
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var source = """
+                package abc;
+                
+                import static def.ToRemap.STATIC_FIELD;
+                
+                public class TestClass {}
+                """;
+        var sourcesJar = Utilities.createTestSources(List.of(new Utilities.Source("abc.TestClass", source)));
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+        var usagesFile = Files.createTempFile("christen-test", ".jsonl");
+
+        Assertions.assertEquals(0, Main.innerMain(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                "--christen-usages="+usagesFile.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+
+        var lines = Files.readAllLines(usagesFile);
+        Assertions.assertEquals(1, lines.size());
+        var line = lines.getFirst();
+
+        int classStart = source.indexOf("ToRemap");
+        int fieldStart = source.indexOf("STATIC_FIELD");
+        Assertions.assertTrue(line.contains("{\"kind\":\"class\",\"name\":\"def/ToRemap\",\"mapped\":\"ghi/Remapped\",\"start\":"+classStart+",\"end\":"+(classStart+"ToRemap".length())+"},{\"kind\":\"field\",\"owner\":\"def/ToRemap\",\"name\":\"STATIC_FIELD\",\"mapped\":\"REMAPPED_STATIC_FIELD\",\"start\":"+fieldStart+",\"end\":"+(fieldStart+"STATIC_FIELD".length())+"}"), line);
+    }
+
+    @Test
+    void writeInheritedUsagesInFileOrder() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.Base",
+                """
+                        package def;
+                        
+                        public class Base {
+                            public void method() {}
+                        }
+                        """
+        ), new Utilities.Source(
+                "def.Sub",
+                """
+                        package def;
+                        
+                        public class Sub extends Base {
+                            @Override
+                            public void method() {}
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var source = """
+                package abc;
+                
+                public class TestClass {
+                    public void method(def.Sub sub) {
+                        sub.method();
+                    }
+                }
+                """;
+        var sourcesJar = Utilities.createTestSources(List.of(new Utilities.Source("abc.TestClass", source), new Utilities.Source(
+                "abc.OtherClass",
+                """
+                        package abc;
+                        
+                        public class OtherClass {}
+                        """
+        )));
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/Base", "ghi/Remapped")
+                .method("()V", "method", "remappedMethod").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+        var usagesFile = Files.createTempFile("christen-test", ".jsonl");
+
+        Assertions.assertEquals(0, Main.innerMain(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                "--christen-usages="+usagesFile.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+
+        // Lines are ordered by file, whichever file finished first
+        var lines = Files.readAllLines(usagesFile);
+        Assertions.assertEquals(2, lines.size(), lines.toString());
+        Assertions.assertTrue(lines.get(0).contains("OtherClass.java"), lines.toString());
+        Assertions.assertTrue(lines.get(1).contains("TestClass.java"), lines.toString());
+
+        // The owner is the mapped class the mapping came from, not the class the method was called through
+        var line = lines.get(1);
+        int methodStart = source.indexOf("method();");
+        Assertions.assertTrue(line.contains("{\"kind\":\"method\",\"owner\":\"def/Base\",\"name\":\"method\",\"descriptor\":\"()V\",\"mapped\":\"remappedMethod\",\"start\":"+methodStart+",\"end\":"+(methodStart+"method".length())+"}"), line);
+    }
+
+    @Test
+    void remapInheritedAfterMiss() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.Base",
+                """
+                        package def;
+                        
+                        public class Base {
+                            public void method() {}
+                        }
+                        """
+        ), new Utilities.Source(
+                "def.Sub",
+                """
+                        package def;
+                        
+                        public class Sub extends Base {
+                            public void subMethod() {}
+
+                            @Override
+                            public void method() {}
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var sources = List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import def.Sub;
+                        
+                        public class TestClass {
+                            public void method(Sub sub) {
+                                sub.subMethod();
+                                sub.method();
+                            }
+                        }
+                        """
+        ));
+        var sourcesJar = Utilities.createTestSources(sources);
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/Base", "ghi/Remapped")
+                .method("()V", "method", "remappedMethod").build()
+                .build()
+                .build().getMap("source", "target");
+        var mappingsFile = Utilities.createTestMappings(mappings);
+
+        var outputFile = Files.createTempFile("christen-test", ".jar");
+
+        Assertions.assertEquals(0, Main.innerMain(
+                "--classpath="+binaryJar.toAbsolutePath(),
+                "--enable-christen",
+                "--christen-mappings="+mappingsFile.toAbsolutePath(),
+                sourcesJar.toAbsolutePath().toString(),
+                outputFile.toAbsolutePath().toString()
+        ));
+
+        Utilities.verifyContents(outputFile, List.of(new Utilities.Source(
+                "abc.TestClass",
+                """
+                        package abc;
+                        
+                        import def.Sub;
+                        
+                        public class TestClass {
+                            public void method(Sub sub) {
+                                sub.subMethod();
+                                sub.remappedMethod();
+                            }
+                        }
+                        """
+        )));
+    }
 }
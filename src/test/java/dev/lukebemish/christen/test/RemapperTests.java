@@ -0,0 +1,217 @@
+package dev.lukebemish.christen.test;
+
+import dev.lukebemish.christen.ChristenRemapper;
+import net.neoforged.srgutils.IMappingBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+class RemapperTests {
+    @Test
+    void remapInMemory() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static ToRemap STATIC_FIELD;
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .build().getMap("source", "target");
+
+        try (var remapper = new ChristenRemapper(mappings, List.of(binaryJar))) {
+            var remapped = remapper.remapAll(Map.of("abc/TestClass.java", """
+                    package abc;
+                    
+                    import def.ToRemap;
+                    
+                    public class TestClass {
+                        ToRemap field = ToRemap.STATIC_FIELD;
+                    }
+                    """));
+            Assertions.assertEquals(Map.of("abc/TestClass.java", """
+                    package abc;
+                    
+                    import ghi.Remapped;
+                    
+                    public class TestClass {
+                        Remapped field = Remapped.REMAPPED_STATIC_FIELD;
+                    }
+                    """), remapped);
+
+            var bytes = ByteBuffer.wrap("""
+                    package abc;
+                    
+                    public class OtherClass {
+                        def.ToRemap field;
+                    }
+                    """.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals("""
+                    package abc;
+                    
+                    public class OtherClass {
+                        ghi.Remapped field;
+                    }
+                    """, remapper.remap("abc/OtherClass.java", bytes));
+        }
+    }
+
+    @Test
+    void remapChangedSources() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.First",
+                """
+                        package def;
+                        
+                        public class First {
+                            public void method() {}
+                        }
+                        """
+        ), new Utilities.Source(
+                "def.Second",
+                """
+                        package def;
+                        
+                        public class Second {
+                            public void method() {}
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/First", "def/First")
+                .method("()V", "method", "firstMethod").build()
+                .build()
+                .addClass("def/Second", "def/Second")
+                .method("()V", "method", "secondMethod").build()
+                .build()
+                .build().getMap("source", "target");
+
+        try (var remapper = new ChristenRemapper(mappings, List.of(binaryJar))) {
+            Assertions.assertEquals("""
+                    package abc;
+                    
+                    public class Foo extends def.First {
+                        @Override
+                        public void method() {}
+                    
+                        void test() {
+                            this.firstMethod();
+                        }
+                    }
+                    """, remapper.remap("abc/Foo.java", """
+                    package abc;
+                    
+                    public class Foo extends def.First {
+                        @Override
+                        public void method() {}
+                    
+                        void test() {
+                            this.method();
+                        }
+                    }
+                    """));
+            Assertions.assertEquals("""
+                    package abc;
+                    
+                    public class Foo extends def.Second {
+                        @Override
+                        public void method() {}
+                    
+                        void test() {
+                            this.secondMethod();
+                        }
+                    }
+                    """, remapper.remap("abc/Foo.java", """
+                    package abc;
+                    
+                    public class Foo extends def.Second {
+                        @Override
+                        public void method() {}
+                    
+                        void test() {
+                            this.method();
+                        }
+                    }
+                    """));
+        }
+    }
+
+    @Test
+    void listEditsFromSeveralThreads() throws IOException {
+        var classpathSources = List.of(new Utilities.Source(
+                "def.ToRemap",
+                """
+                        package def;
+                        
+                        public class ToRemap {
+                            public static ToRemap STATIC_FIELD;
+                        }
+                        """
+        ));
+        var binaryJar = Utilities.createTestBinaries(classpathSources, List.of());
+
+        var mappings = IMappingBuilder.create("source", "target")
+                .addClass("def/ToRemap", "ghi/Remapped")
+                .field("STATIC_FIELD", "REMAPPED_STATIC_FIELD").descriptor("Ldef/ToRemap;").build()
+                .build()
+                .build().getMap("source", "target");
+
+        var source = """
+                package abc;
+                
+                import def.ToRemap;
+                import static def.ToRemap.*;
+                
+                public class TestClass {
+                    ToRemap field = STATIC_FIELD;
+                }
+                """;
+        var expected = """
+                package abc;
+                
+                import ghi.Remapped;
+                import static def.ToRemap.*;import static ghi.Remapped.REMAPPED_STATIC_FIELD;
+                
+                public class TestClass {
+                    Remapped field = REMAPPED_STATIC_FIELD;
+                }
+                """;
+
+        try (var remapper = new ChristenRemapper(mappings, List.of(binaryJar))) {
+            var results = IntStream.range(0, 16).parallel()
+                    .mapToObj(i -> i % 2 == 0 ? remapper.remap("abc/TestClass.java", source) : apply(source, remapper.edits("abc/TestClass.java", source)))
+                    .toList();
+            results.forEach(result -> Assertions.assertEquals(expected, result));
+
+            var edits = remapper.edits("abc/TestClass.java", source);
+            Assertions.assertTrue(edits.stream().anyMatch(edit -> edit.start() == edit.end()), edits.toString());
+        }
+    }
+
+    private static String apply(String source, List<ChristenRemapper.Edit> edits) {
+        var builder = new StringBuilder();
+        int position = 0;
+        for (var edit : edits) {
+            Assertions.assertTrue(edit.start() >= position, edits.toString());
+            builder.append(source, position, edit.start()).append(edit.text());
+            position = edit.end();
+        }
+        return builder.append(source.substring(position)).toString();
+    }
+}